@@ -59,6 +59,7 @@ import com.gh4a.activities.home.HomeActivity;
 import com.gh4a.db.BookmarksProvider;
 import com.gh4a.fragment.SettingsFragment;
 import com.gh4a.loader.LoaderCallbacks;
+import com.gh4a.utils.StartupTrace;
 import com.gh4a.utils.UiUtils;
 import com.gh4a.widget.ColorDrawable;
 import com.gh4a.widget.SwipeRefreshLayout;
@@ -133,6 +134,7 @@ public abstract class BaseActivity extends AppCompatActivity implements
         setupSwipeToRefresh();
         setupNavigationDrawer();
         setupHeaderDrawable();
+        StartupTrace.onActivityCreated(this);
     }
 
     @Override
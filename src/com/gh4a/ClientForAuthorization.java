@@ -10,6 +10,7 @@ import org.eclipse.egit.github.core.client.GitHubResponse;
 import org.eclipse.egit.github.core.client.RequestException;
 
 
+import com.gh4a.net.HttpTransport;
 import com.gh4a.utils.StringUtils;
 
 public class ClientForAuthorization extends GitHubClient {
@@ -19,6 +20,11 @@ public class ClientForAuthorization extends GitHubClient {
         mOtpCode = otpCode;
     }
 
+    @Override
+    protected HttpURLConnection createConnection(String uri) throws IOException {
+        return HttpTransport.open(createUri(uri));
+    }
+
     public GitHubResponse get(GitHubRequest request) throws IOException {
         HttpURLConnection conn = createGet(request.generateUri());
         try {
@@ -1,21 +1,95 @@
 package com.gh4a;
 
 import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.IGitHubConstants;
 import org.eclipse.egit.github.core.client.PageIterator;
 import org.eclipse.egit.github.core.client.PagedRequest;
+import org.eclipse.egit.github.core.client.RequestException;
 
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.gh4a.net.ApiCache;
+import com.gh4a.net.CachePolicy;
+import com.gh4a.net.HttpTransport;
+import com.gh4a.net.ModelTypeAdapterFactory;
+import com.gh4a.net.RecordingInputStream;
+import com.gh4a.net.RequestCoalescer;
+import com.gh4a.net.RequestMetrics;
+import com.gh4a.net.RequestScheduler;
+import com.gh4a.net.RetryPolicy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 public class DefaultClient extends GitHubClient {
-    private static final String DEFAULT_HEADER_ACCEPT = "application/vnd.github.v3.full+json";
+    public static final String DEFAULT_HEADER_ACCEPT = "application/vnd.github.v3.full+json";
+    public static final String HEADER_ACCEPT_HTML = "application/vnd.github.v3.html";
+    public static final String HEADER_ACCEPT_TEXT_MATCH = "application/vnd.github.v3.text-match+json";
+
+    private static final String HEADER_ETAG = "ETag";
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String HEADER_LINK = "Link";
+    private static final String HEADER_RATE_LIMIT_RESET = "X-RateLimit-Reset";
+    private static final String HEADER_RATE_LIMIT_RESOURCE = "X-RateLimit-Resource";
+    private static final String RATE_LIMIT_RESOURCE_CORE = "core";
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+
+    private static final String ENCODING_GZIP = "gzip";
+    private static final String ENCODING_DEFLATE = "deflate";
+
+    // shared by all clients, so that e.g. loaders of different screens
+    // requesting the same resource at the same time only cause one request
+    private static final RequestCoalescer<String, GitHubResponse> sCoalescer =
+            new RequestCoalescer<>();
+
+    // API endpoint used by clients created afterwards, null means api.github.com
+    private static volatile URL sApiEndpoint;
 
     public DefaultClient() {
         this(DEFAULT_HEADER_ACCEPT);
     }
 
     public DefaultClient(String headerAccept) {
-        super();
+        this(headerAccept, sApiEndpoint);
+    }
+
+    private DefaultClient(String headerAccept, URL endpoint) {
+        this(headerAccept,
+                endpoint != null ? endpoint.getHost() : IGitHubConstants.HOST_API,
+                endpoint != null ? endpoint.getPort() : -1,
+                endpoint != null ? endpoint.getProtocol() : IGitHubConstants.PROTOCOL_HTTPS);
+    }
+
+    public DefaultClient(String headerAccept, String hostname, int port, String scheme) {
+        super(hostname, port, scheme);
         setHeaderAccept(headerAccept);
+        gson = ModelTypeAdapterFactory.getGson();
+    }
+
+    /**
+     * Points clients created from now on to a different API server,
+     * e.g. a local {@link com.gh4a.net.FixtureServer}. Pass null to use
+     * api.github.com again.
+     */
+    public static void setApiEndpoint(URL endpoint) {
+        sApiEndpoint = endpoint;
+    }
+
+    @Override
+    protected HttpURLConnection createConnection(String uri) throws IOException {
+        return HttpTransport.open(createUri(uri));
     }
 
     @Override
@@ -33,8 +107,284 @@ public class DefaultClient extends GitHubClient {
         return super.isError(code);
     }
 
+    @Override
+    protected GitHubClient updateRateLimits(HttpURLConnection request) {
+        super.updateRateLimits(request);
+        if (getRequestLimit() < 0 || getRemainingRequests() < 0) {
+            // not an API response, keep what we know
+            return this;
+        }
+        if (!isCoreRateLimit(request)) {
+            // e.g. search, which has a much smaller limit of its own
+            return this;
+        }
+
+        long resetTime = 0;
+        String reset = request.getHeaderField(HEADER_RATE_LIMIT_RESET);
+        if (reset != null) {
+            try {
+                resetTime = Long.parseLong(reset) * 1000;
+            } catch (NumberFormatException e) {
+                // ignored, treat as unknown
+            }
+        }
+        RequestScheduler.getInstance().updateBudget(getRequestLimit(),
+                getRemainingRequests(), resetTime);
+        return this;
+    }
+
+    private static boolean isCoreRateLimit(HttpURLConnection request) {
+        String resource = request.getHeaderField(HEADER_RATE_LIMIT_RESOURCE);
+        if (resource != null) {
+            return RATE_LIMIT_RESOURCE_CORE.equals(resource);
+        }
+        // older servers don't tell the resource
+        return !request.getURL().getPath().contains(IGitHubConstants.SEGMENT_SEARCH + "/");
+    }
+
+    @Override
+    protected HttpURLConnection createConnection(String uri, String method) throws IOException {
+        if (!METHOD_GET.equals(method)) {
+            if (CachePolicy.getCurrentMode() == CachePolicy.MODE_CACHE_ONLY) {
+                throw new CachePolicy.CacheMissException(createUri(uri));
+            }
+            Gh4Application.get().getApiCache().onDataModified();
+        }
+        return super.createConnection(uri, method);
+    }
+
+    @Override
+    public GitHubResponse get(final GitHubRequest request) throws IOException {
+        final long startTime = SystemClock.elapsedRealtime();
+        final String uri = request.generateUri();
+        String accept = request.getResponseContentType();
+        // only join requests of the same priority, a foreground request must
+        // neither queue behind nor be throttled like a prefetch
+        String key = uri + " " + (accept != null ? accept : getHeaderAccept())
+                + " " + request.getType() + " " + request.getArrayType()
+                + " " + CachePolicy.getCurrentMode()
+                + " " + RequestScheduler.getThreadPriority();
+
+        return sCoalescer.execute(key, new RequestCoalescer.Call<GitHubResponse>() {
+            @Override
+            public GitHubResponse execute() throws IOException {
+                return doGet(request);
+            }
+
+            @Override
+            public GitHubResponse share(GitHubResponse response) {
+                RequestMetrics.getInstance().record(uri, HttpURLConnection.HTTP_OK,
+                        SystemClock.elapsedRealtime() - startTime, 0,
+                        RequestMetrics.OUTCOME_SHARED);
+                return new SharedResponse(response);
+            }
+        });
+    }
+
+    private GitHubResponse doGet(GitHubRequest request) throws IOException {
+        String uri = request.generateUri();
+        String url = createUri(uri);
+        String accept = request.getResponseContentType();
+        if (accept == null) {
+            accept = getHeaderAccept();
+        }
+        String account = Gh4Application.get().getAuthLogin();
+        if (account == null) {
+            account = "";
+        }
+
+        long startTime = SystemClock.elapsedRealtime();
+        ApiCache cache = Gh4Application.get().getApiCache();
+        ApiCache.Entry cached = cache.get(url, account, accept);
+        int mode = CachePolicy.getCurrentMode();
+
+        if (cached != null && (mode == CachePolicy.MODE_CACHE_ONLY
+                || (mode == CachePolicy.MODE_DEFAULT && cache.isFresh(cached)))) {
+            boolean fresh = cache.isFresh(cached);
+            if (!fresh) {
+                CachePolicy.reportStaleResponse();
+            }
+            RequestMetrics.getInstance().record(url, HttpURLConnection.HTTP_OK,
+                    SystemClock.elapsedRealtime() - startTime, 0,
+                    fresh ? RequestMetrics.OUTCOME_FRESH : RequestMetrics.OUTCOME_STALE);
+            return createCachedResponse(null, request, cached);
+        } else if (mode == CachePolicy.MODE_CACHE_ONLY) {
+            throw new CachePolicy.CacheMissException(url);
+        }
+
+        RequestScheduler scheduler = RequestScheduler.getInstance();
+        for (int retries = 0; ; retries++) {
+            try {
+                scheduler.acquire();
+            } catch (RequestScheduler.ThrottledException e) {
+                return useStaleResponse(request, url, cached, startTime, e);
+            }
+
+            IOException error;
+            try {
+                return doNetworkGet(request, uri, account, accept, cached);
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                scheduler.release();
+            }
+
+            // the slot isn't kept while waiting, so other requests can proceed
+            long delay = RetryPolicy.getRetryDelay(error, retries);
+            if (delay >= 0) {
+                RequestMetrics.getInstance().recordRetry(url, delay);
+                RetryPolicy.sleep(delay);
+                continue;
+            }
+
+            error = RetryPolicy.unwrap(error);
+            if (error instanceof RequestException) {
+                throw error;
+            }
+            // the server can't be reached, better show outdated data than nothing
+            return useStaleResponse(request, url, cached, startTime, error);
+        }
+    }
+
+    private GitHubResponse useStaleResponse(GitHubRequest request, String url,
+            ApiCache.Entry cached, long startTime, IOException error) throws IOException {
+        if (cached == null) {
+            throw error;
+        }
+        Log.d(Constants.LOG_TAG, "Using cached response for " + url + " after error", error);
+        CachePolicy.reportStaleResponse();
+        RequestMetrics.getInstance().record(url, RequestMetrics.STATUS_NETWORK_ERROR,
+                SystemClock.elapsedRealtime() - startTime, 0, RequestMetrics.OUTCOME_STALE);
+        return createCachedResponse(null, request, cached);
+    }
+
+    private GitHubResponse doNetworkGet(GitHubRequest request, String uri,
+            String account, String accept, ApiCache.Entry cached) throws IOException {
+        HttpURLConnection conn = createGet(uri);
+        conn.setRequestProperty(HEADER_ACCEPT, accept);
+        if (cached != null) {
+            if (cached.etag != null) {
+                conn.setRequestProperty(HEADER_IF_NONE_MATCH, cached.etag);
+            }
+            if (cached.lastModified != null) {
+                conn.setRequestProperty(HEADER_IF_MODIFIED_SINCE, cached.lastModified);
+            }
+        }
+
+        ApiCache cache = Gh4Application.get().getApiCache();
+        String url = conn.getURL().toExternalForm();
+        long startTime = SystemClock.elapsedRealtime();
+        int status = RequestMetrics.STATUS_NETWORK_ERROR;
+        int outcome = RequestMetrics.OUTCOME_NONE;
+        long bytes = 0;
+
+        try {
+            final int code = conn.getResponseCode();
+            status = code;
+            updateRateLimits(conn);
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                cache.recordHit();
+                cache.touch(url, account, accept);
+                outcome = RequestMetrics.OUTCOME_HIT;
+                return createCachedResponse(conn, request, cached);
+            } else if (isOk(code)) {
+                cache.recordMiss();
+                outcome = RequestMetrics.OUTCOME_MISS;
+                String encoding = conn.getHeaderField(HEADER_CONTENT_ENCODING);
+
+                // Parse while the response arrives instead of buffering it first;
+                // the still compressed bytes are recorded on the way for the cache
+                RecordingInputStream in = new RecordingInputStream(conn.getInputStream(), true);
+                try {
+                    Object body = getBody(request, decodeStream(in, encoding));
+                    in.drain();
+                    cache.put(url, account, accept, new ApiCache.Entry(
+                            ApiCache.getResourceType(url), System.currentTimeMillis(),
+                            conn.getHeaderField(HEADER_ETAG),
+                            conn.getHeaderField(HEADER_LAST_MODIFIED),
+                            conn.getHeaderField(HEADER_LINK), encoding,
+                            in.getRecordedBytes()));
+                    return new GitHubResponse(conn, body);
+                } finally {
+                    bytes = in.getByteCount();
+                    in.closeSource();
+                }
+            } else if (isEmpty(code)) {
+                return new GitHubResponse(conn, null);
+            }
+            throw RetryPolicy.wrapError(
+                    createException(getStream(conn), code, conn.getResponseMessage()),
+                    code, conn.getHeaderField(HEADER_RETRY_AFTER));
+        } finally {
+            conn.disconnect();
+            RequestMetrics.getInstance().record(url, status,
+                    SystemClock.elapsedRealtime() - startTime, bytes, outcome);
+        }
+    }
+
+    private GitHubResponse createCachedResponse(HttpURLConnection conn,
+            GitHubRequest request, ApiCache.Entry entry) throws IOException {
+        InputStream in = decodeStream(new ByteArrayInputStream(entry.body),
+                entry.contentEncoding);
+        return new CachedResponse(conn, getBody(request, in), entry);
+    }
+
     @Override
     public <V> PageIterator<V> createPageIterator(PagedRequest<V> request) {
         return new PageIteratorWithSaveableState<>(request, this);
     }
+
+    private static InputStream decodeStream(InputStream in, String encoding)
+            throws IOException {
+        if (ENCODING_GZIP.equals(encoding)) {
+            return new GZIPInputStream(in);
+        } else if (ENCODING_DEFLATE.equals(encoding)) {
+            return new InflaterInputStream(in);
+        }
+        return in;
+    }
+
+    // Response handed to requests that joined an identical running request.
+    // Callers may modify the returned lists, so each of them gets its own.
+    private static class SharedResponse extends GitHubResponse {
+        private final GitHubResponse mSource;
+
+        public SharedResponse(GitHubResponse source) {
+            super(null, copyBody(source.getBody()));
+            mSource = source;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return mSource.getHeader(name);
+        }
+
+        private static Object copyBody(Object body) {
+            if (body instanceof Collection) {
+                return new ArrayList<>((Collection<?>) body);
+            }
+            return body;
+        }
+    }
+
+    // Responses answered from the cache, either after a 304 response or
+    // without a request (conn is null then). 304 responses don't necessarily
+    // repeat the pagination headers, so take those from the cache.
+    private static class CachedResponse extends GitHubResponse {
+        private final ApiCache.Entry mEntry;
+
+        public CachedResponse(HttpURLConnection conn, Object body, ApiCache.Entry entry) {
+            super(conn, body);
+            mEntry = entry;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            String value = response != null ? super.getHeader(name) : null;
+            if (value == null && HEADER_LINK.equals(name)) {
+                return mEntry.links;
+            }
+            return value;
+        }
+    }
 }
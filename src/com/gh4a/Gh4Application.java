@@ -16,6 +16,8 @@
 
 package com.gh4a;
 
+import java.io.File;
+import java.net.URL;
 import java.util.HashMap;
 
 import org.eclipse.egit.github.core.client.GitHubClient;
@@ -48,6 +50,10 @@ import android.text.TextUtils;
 
 import com.crashlytics.android.Crashlytics;
 import com.gh4a.fragment.SettingsFragment;
+import com.gh4a.loader.PageSnapshotCache;
+import com.gh4a.net.ApiCache;
+import com.gh4a.utils.RelativeTimeCache;
+import com.gh4a.utils.StartupTrace;
 import io.fabric.sdk.android.Fabric;
 
 /**
@@ -74,14 +80,24 @@ public class Gh4Application extends Application implements OnSharedPreferenceCha
     public static String MARKDOWN_SERVICE = "github.markdown";
 
     private static Gh4Application sInstance;
-    private GitHubClient mClient;
-    private HashMap<String, GitHubService> mServices;
+    // keyed by Accept header
+    private final HashMap<String, GitHubClient> mClients = new HashMap<>();
+    private final HashMap<String, GitHubService> mServices = new HashMap<>();
     private PrettyTime mPt;
+    private ApiCache mApiCache;
+    private volatile ApiCache mApiCacheOverride;
+    private PageSnapshotCache mPageSnapshotCache;
 
     private static final int MAX_TRACKED_URLS = 5;
+    private static final long API_CACHE_SIZE = 10 * 1024 * 1024;
+    private static final long PAGE_SNAPSHOT_CACHE_SIZE = 4 * 1024 * 1024;
     private static int sNextUrlTrackingPosition = 0;
     private static boolean sHasCrashlytics;
 
+    static {
+        StartupTrace.start();
+    }
+
     /*
      * (non-Javadoc)
      * @see android.app.Application#onCreate()
@@ -102,32 +118,91 @@ public class Gh4Application extends Application implements OnSharedPreferenceCha
             Fabric.with(this, new Crashlytics());
         }
 
-        mPt = new PrettyTime();
-
-        mClient = new DefaultClient();
-        mClient.setOAuth2Token(getAuthToken());
-
-        mServices = new HashMap<>();
-        mServices.put(STAR_SERVICE, new StarService(mClient));
-        mServices.put(WATCHER_SERVICE, new WatcherService(mClient));
-        mServices.put(LABEL_SERVICE, new LabelService(mClient));
-        mServices.put(ISSUE_SERVICE, new IssueService(mClient));
-        mServices.put(COMMIT_SERVICE, new CommitService(mClient));
-        mServices.put(REPO_SERVICE, new RepositoryService(mClient));
-        mServices.put(USER_SERVICE, new UserService(mClient));
-        mServices.put(MILESTONE_SERVICE, new MilestoneService(mClient));
-        mServices.put(COLLAB_SERVICE, new CollaboratorService(mClient));
-        mServices.put(DOWNLOAD_SERVICE, new DownloadService(mClient));
-        mServices.put(CONTENTS_SERVICE, new ContentsService(mClient));
-        mServices.put(GIST_SERVICE, new GistService(mClient));
-        mServices.put(ORG_SERVICE, new OrganizationService(mClient));
-        mServices.put(PULL_SERVICE, new PullRequestService(mClient));
-        mServices.put(EVENT_SERVICE, new EventService(mClient));
-        mServices.put(MARKDOWN_SERVICE, new MarkdownService(mClient));
+        // client, services and PrettyTime are created on first use,
+        // so that the first activity can be shown sooner
+        mApiCache = new ApiCache(this, new File(getCacheDir(), "api"), API_CACHE_SIZE);
+        StartupTrace.mark("application created");
+    }
+
+    /**
+     * Returns the client for requests with the given Accept header. There's
+     * only one client per media type, which is kept for the lifetime of the app.
+     */
+    public synchronized GitHubClient getClient(String headerAccept) {
+        GitHubClient client = mClients.get(headerAccept);
+        if (client == null) {
+            client = new DefaultClient(headerAccept);
+            client.setOAuth2Token(getAuthToken());
+            mClients.put(headerAccept, client);
+        }
+        return client;
+    }
+
+    private static GitHubService createService(String name, GitHubClient client) {
+        if (STAR_SERVICE.equals(name)) {
+            return new StarService(client);
+        } else if (WATCHER_SERVICE.equals(name)) {
+            return new WatcherService(client);
+        } else if (LABEL_SERVICE.equals(name)) {
+            return new LabelService(client);
+        } else if (ISSUE_SERVICE.equals(name)) {
+            return new IssueService(client);
+        } else if (COMMIT_SERVICE.equals(name)) {
+            return new CommitService(client);
+        } else if (REPO_SERVICE.equals(name)) {
+            return new RepositoryService(client);
+        } else if (USER_SERVICE.equals(name)) {
+            return new UserService(client);
+        } else if (MILESTONE_SERVICE.equals(name)) {
+            return new MilestoneService(client);
+        } else if (COLLAB_SERVICE.equals(name)) {
+            return new CollaboratorService(client);
+        } else if (DOWNLOAD_SERVICE.equals(name)) {
+            return new DownloadService(client);
+        } else if (CONTENTS_SERVICE.equals(name)) {
+            return new ContentsService(client);
+        } else if (GIST_SERVICE.equals(name)) {
+            return new GistService(client);
+        } else if (ORG_SERVICE.equals(name)) {
+            return new OrganizationService(client);
+        } else if (PULL_SERVICE.equals(name)) {
+            return new PullRequestService(client);
+        } else if (EVENT_SERVICE.equals(name)) {
+            return new EventService(client);
+        } else if (MARKDOWN_SERVICE.equals(name)) {
+            return new MarkdownService(client);
+        }
+        return null;
+    }
+
+    /**
+     * Switches all services to a different API server, see
+     * {@link DefaultClient#setApiEndpoint(URL)}. Only meant for debugging.
+     */
+    public synchronized void setApiEndpoint(URL endpoint) {
+        DefaultClient.setApiEndpoint(endpoint);
+        mClients.clear();
+        mServices.clear();
     }
 
     public GitHubService getService(String name) {
-        return mServices.get(name);
+        return getService(name, DefaultClient.DEFAULT_HEADER_ACCEPT);
+    }
+
+    /**
+     * Returns a service using the client for the given Accept header,
+     * see {@link #getClient(String)}.
+     */
+    public synchronized GitHubService getService(String name, String headerAccept) {
+        String key = headerAccept + " " + name;
+        GitHubService service = mServices.get(key);
+        if (service == null) {
+            service = createService(name, getClient(headerAccept));
+            if (service != null) {
+                mServices.put(key, service);
+            }
+        }
+        return service;
     }
 
     private void selectTheme(int theme) {
@@ -145,7 +220,10 @@ public class Gh4Application extends Application implements OnSharedPreferenceCha
     @Override
     public void onConfigurationChanged(Configuration newConfig) {
         super.onConfigurationChanged(newConfig);
-        mPt = new PrettyTime(newConfig.locale);
+        synchronized (this) {
+            mPt = null;
+        }
+        RelativeTimeCache.clear();
     }
 
     /* package */ static void trackVisitedUrl(String url) {
@@ -160,7 +238,31 @@ public class Gh4Application extends Application implements OnSharedPreferenceCha
         }
     }
 
-    public PrettyTime getPrettyTimeInstance() {
+    public ApiCache getApiCache() {
+        ApiCache override = mApiCacheOverride;
+        return override != null ? override : mApiCache;
+    }
+
+    /**
+     * Makes requests use the given cache instead of the persistent one, or
+     * the persistent one again if null. Only meant for debugging.
+     */
+    public void setApiCacheOverride(ApiCache cache) {
+        mApiCacheOverride = cache;
+    }
+
+    public synchronized PageSnapshotCache getPageSnapshotCache() {
+        if (mPageSnapshotCache == null) {
+            mPageSnapshotCache = new PageSnapshotCache(
+                    new File(getCacheDir(), "pages"), PAGE_SNAPSHOT_CACHE_SIZE);
+        }
+        return mPageSnapshotCache;
+    }
+
+    public synchronized PrettyTime getPrettyTimeInstance() {
+        if (mPt == null) {
+            mPt = new PrettyTime(getResources().getConfiguration().locale);
+        }
         return mPt;
     }
 
@@ -177,6 +279,8 @@ public class Gh4Application extends Application implements OnSharedPreferenceCha
                 .remove(Constants.User.LOGIN)
                 .remove(Constants.User.AUTH_TOKEN)
                 .apply();
+        mApiCache.clear();
+        getPageSnapshotCache().clear();
     }
 
     private SharedPreferences getPrefs() {
@@ -194,7 +298,12 @@ public class Gh4Application extends Application implements OnSharedPreferenceCha
     @Override
     public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
         if (key.equals(Constants.User.AUTH_TOKEN)) {
-            mClient.setOAuth2Token(getAuthToken());
+            String token = getAuthToken();
+            synchronized (this) {
+                for (GitHubClient client : mClients.values()) {
+                    client.setOAuth2Token(token);
+                }
+            }
         } else if (key.equals(SettingsFragment.KEY_THEME)) {
             selectTheme(sharedPreferences.getInt(key, Constants.Theme.LIGHT));
         }
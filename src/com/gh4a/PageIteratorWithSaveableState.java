@@ -2,10 +2,18 @@ package com.gh4a;
 
 import android.os.Bundle;
 
+import org.eclipse.egit.github.core.IResourceProvider;
 import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GitHubResponse;
 import org.eclipse.egit.github.core.client.PageIterator;
 import org.eclipse.egit.github.core.client.PagedRequest;
 
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+
 public class PageIteratorWithSaveableState<V> extends PageIterator<V> {
     private static final String STATE_KEY_NEXT_PAGE = "next_page";
     private static final String STATE_KEY_LAST_PAGE = "last_page";
@@ -13,10 +21,43 @@ public class PageIteratorWithSaveableState<V> extends PageIterator<V> {
     private static final String STATE_KEY_LAST = "last";
     private static final String STATE_KEY_PAGE_SIZE = "page_size";
 
+    // changes whenever the position of the iterator changes
+    private int mGeneration;
+
+    /**
+     * A request for the next page, taken via {@link #reserveNext()}. It can
+     * be executed without holding the iterator, which only advances when
+     * the page is passed to {@link #complete}.
+     */
+    public static class PendingPage<V> {
+        private final PagedRequest<V> mRequest;
+        private final int mGeneration;
+        private GitHubResponse mResponse;
+
+        private PendingPage(PagedRequest<V> request, int generation) {
+            mRequest = request;
+            mGeneration = generation;
+        }
+
+        public void execute(GitHubClient client) throws IOException {
+            mResponse = client.get(mRequest);
+        }
+    }
+
     public PageIteratorWithSaveableState(PagedRequest<V> request, GitHubClient client) {
         super(request, client);
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        mGeneration++;
+    }
+
+    public GitHubClient getClient() {
+        return client;
+    }
+
     public Bundle saveState() {
         Bundle state = new Bundle();
         state.putInt(STATE_KEY_NEXT_PAGE, nextPage);
@@ -32,14 +73,69 @@ public class PageIteratorWithSaveableState<V> extends PageIterator<V> {
             return;
         }
         nextPage = state.getInt(STATE_KEY_NEXT_PAGE, nextPage);
-        lastPage = state.getInt(STATE_KEY_NEXT_PAGE, lastPage);
+        lastPage = state.getInt(STATE_KEY_LAST_PAGE, lastPage);
         String newNext = state.getString(STATE_KEY_NEXT);
-        String newLast = state.getString(STATE_KEY_NEXT);
+        String newLast = state.getString(STATE_KEY_LAST);
         if (newNext != null) {
             next = newNext;
         }
         if (newLast != null) {
             last = newLast;
         }
+        mGeneration++;
+    }
+
+    /**
+     * Returns the request for the next page, or null if there is none.
+     * Unlike {@link #next()}, this doesn't touch the request of the iterator.
+     */
+    public PendingPage<V> reserveNext() {
+        if (!hasNext()) {
+            return null;
+        }
+        String uri = next;
+        if (nextPage >= 1) {
+            // same as in next()
+            try {
+                uri = new URL(next).getFile();
+            } catch (MalformedURLException e) {
+                // use it as is
+            }
+        }
+
+        PagedRequest<V> pageRequest = new PagedRequest<>(request.getPage(), request.getPageSize());
+        pageRequest.setUri(uri);
+        pageRequest.setParams(request.getParams());
+        pageRequest.setType(request.getType());
+        pageRequest.setArrayType(request.getArrayType());
+        pageRequest.setResponseContentType(request.getResponseContentType());
+        return new PendingPage<>(pageRequest, mGeneration);
+    }
+
+    /**
+     * Advances the iterator past the executed page and returns its items.
+     * Returns null if the iterator was moved since the page was reserved.
+     */
+    @SuppressWarnings("unchecked")
+    public Collection<V> complete(PendingPage<V> page) {
+        if (page.mGeneration != mGeneration || page.mResponse == null) {
+            return null;
+        }
+        GitHubResponse response = page.mResponse;
+        next = response.getNext();
+        nextPage = parsePageNumber(next);
+        last = response.getLast();
+        lastPage = parsePageNumber(last);
+        mGeneration++;
+
+        Object body = response.getBody();
+        if (body instanceof Collection) {
+            return (Collection<V>) body;
+        } else if (body instanceof IResourceProvider) {
+            return ((IResourceProvider<V>) body).getResources();
+        } else if (body != null) {
+            return Collections.singletonList((V) body);
+        }
+        return Collections.emptyList();
     }
 }
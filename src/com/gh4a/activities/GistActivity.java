@@ -46,7 +46,7 @@ import com.gh4a.loader.GistStarLoader;
 import com.gh4a.loader.LoaderCallbacks;
 import com.gh4a.loader.LoaderResult;
 import com.gh4a.utils.ApiHelpers;
-import com.gh4a.utils.StringUtils;
+import com.gh4a.utils.RelativeTimeTicker;
 import com.gh4a.utils.UiUtils;
 
 public class GistActivity extends BaseActivity implements View.OnClickListener {
@@ -123,7 +123,7 @@ public class GistActivity extends BaseActivity implements View.OnClickListener {
                 ? getString(R.string.gist_no_description) : gist.getDescription());
 
         TextView tvCreatedAt = (TextView) findViewById(R.id.tv_created_at);
-        tvCreatedAt.setText(StringUtils.formatRelativeTime(this, gist.getCreatedAt(), true));
+        RelativeTimeTicker.setText(tvCreatedAt, gist.getCreatedAt(), true);
 
         Map<String, GistFile> files = gist.getFiles();
         if (files != null && !files.isEmpty()) {
@@ -47,6 +47,7 @@ import com.gh4a.Gh4Application;
 import com.gh4a.ProgressDialogTask;
 import com.gh4a.R;
 import com.gh4a.TwoFactorAuthException;
+import com.gh4a.utils.StartupTrace;
 import com.gh4a.utils.StringUtils;
 import com.gh4a.utils.UiUtils;
 
@@ -65,6 +66,8 @@ public class Github4AndroidActivity extends BaseActivity {
             goToToplevelActivity();
             finish();
         } else {
+            // the login screen isn't a cold start worth measuring
+            StartupTrace.abort();
             setContentView(R.layout.main);
         }
     }
@@ -63,6 +63,7 @@ import com.gh4a.loader.LoaderResult;
 import com.gh4a.utils.ApiHelpers;
 import com.gh4a.utils.AvatarHandler;
 import com.gh4a.utils.IntentUtils;
+import com.gh4a.utils.RelativeTimeTicker;
 import com.gh4a.utils.StringUtils;
 import com.gh4a.utils.UiUtils;
 import com.gh4a.widget.DividerItemDecoration;
@@ -251,7 +252,7 @@ public class IssueActivity extends BaseActivity implements
         tvExtra.setText(ApiHelpers.getUserLogin(this, mIssue.getUser()));
 
         TextView tvTimestamp = (TextView) mListHeaderView.findViewById(R.id.tv_timestamp);
-        tvTimestamp.setText(StringUtils.formatRelativeTime(this, mIssue.getCreatedAt(), true));
+        RelativeTimeTicker.setText(tvTimestamp, mIssue.getCreatedAt(), true);
 
         TextView tvTitle = (TextView) mHeader.findViewById(R.id.tv_title);
         tvTitle.setText(mIssue.getTitle());
@@ -31,7 +31,7 @@ import com.gh4a.R;
 import com.gh4a.utils.ApiHelpers;
 import com.gh4a.utils.AvatarHandler;
 import com.gh4a.utils.IntentUtils;
-import com.gh4a.utils.StringUtils;
+import com.gh4a.utils.RelativeTimeTicker;
 
 public class CommitAdapter extends RootAdapter<RepositoryCommit, CommitAdapter.ViewHolder> {
     public CommitAdapter(Context context) {
@@ -69,8 +69,8 @@ public class CommitAdapter extends RootAdapter<RepositoryCommit, CommitAdapter.V
         }
 
         holder.tvExtra.setText(ApiHelpers.getAuthorName(mContext, commit));
-        holder.tvTimestamp.setText(
-                StringUtils.formatRelativeTime(mContext, commit.getCommit().getAuthor().getDate(), false));
+        RelativeTimeTicker.setText(holder.tvTimestamp,
+                commit.getCommit().getAuthor().getDate(), false);
     }
 
     @Override
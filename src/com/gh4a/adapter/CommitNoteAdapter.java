@@ -35,7 +35,7 @@ import com.gh4a.R;
 import com.gh4a.utils.ApiHelpers;
 import com.gh4a.utils.AvatarHandler;
 import com.gh4a.utils.IntentUtils;
-import com.gh4a.utils.StringUtils;
+import com.gh4a.utils.RelativeTimeTicker;
 import com.gh4a.utils.UiUtils;
 import com.github.mobile.util.HtmlUtils;
 import com.github.mobile.util.HttpImageGetter;
@@ -80,8 +80,7 @@ public class CommitNoteAdapter extends RootAdapter<CommitComment, CommitNoteAdap
 
         holder.ivGravatar.setTag(user);
         holder.tvExtra.setText(userName);
-        holder.tvTimestamp.setText(StringUtils.formatRelativeTime(mContext,
-                comment.getCreatedAt(), true));
+        RelativeTimeTicker.setText(holder.tvTimestamp, comment.getCreatedAt(), true);
 
         String body = HtmlUtils.format(comment.getBodyHtml()).toString();
         mImageGetter.bind(holder.tvDesc, body, comment.getId());
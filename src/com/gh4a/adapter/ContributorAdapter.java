@@ -5,6 +5,7 @@ import org.eclipse.egit.github.core.Contributor;
 import android.content.Context;
 import android.content.Intent;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -40,6 +41,18 @@ public class ContributorAdapter extends RootAdapter<Contributor, ContributorAdap
                 contributor.getContributions(), contributor.getContributions()));
     }
 
+    @Override
+    protected Object getItemKey(Contributor contributor) {
+        // null for anonymous contributors
+        return contributor.getLogin();
+    }
+
+    @Override
+    protected boolean areContentsTheSame(Contributor oldContributor, Contributor newContributor) {
+        return oldContributor.getContributions() == newContributor.getContributions()
+                && TextUtils.equals(oldContributor.getName(), newContributor.getName());
+    }
+
     @Override
     public void onClick(View v) {
         if (v.getId() == R.id.iv_gravatar) {
@@ -0,0 +1,459 @@
+package com.gh4a.adapter;
+
+import java.util.List;
+
+import org.eclipse.egit.github.core.Commit;
+import org.eclipse.egit.github.core.CommitComment;
+import org.eclipse.egit.github.core.Gist;
+import org.eclipse.egit.github.core.GollumPage;
+import org.eclipse.egit.github.core.Issue;
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.Release;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.Team;
+import org.eclipse.egit.github.core.User;
+import org.eclipse.egit.github.core.event.CommitCommentPayload;
+import org.eclipse.egit.github.core.event.CreatePayload;
+import org.eclipse.egit.github.core.event.DeletePayload;
+import org.eclipse.egit.github.core.event.DownloadPayload;
+import org.eclipse.egit.github.core.event.Event;
+import org.eclipse.egit.github.core.event.EventRepository;
+import org.eclipse.egit.github.core.event.FollowPayload;
+import org.eclipse.egit.github.core.event.ForkPayload;
+import org.eclipse.egit.github.core.event.GistPayload;
+import org.eclipse.egit.github.core.event.GollumPayload;
+import org.eclipse.egit.github.core.event.IssueCommentPayload;
+import org.eclipse.egit.github.core.event.IssuesPayload;
+import org.eclipse.egit.github.core.event.MemberPayload;
+import org.eclipse.egit.github.core.event.PullRequestPayload;
+import org.eclipse.egit.github.core.event.PullRequestReviewCommentPayload;
+import org.eclipse.egit.github.core.event.PushPayload;
+import org.eclipse.egit.github.core.event.ReleasePayload;
+import org.eclipse.egit.github.core.event.TeamAddPayload;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Typeface;
+import android.support.v4.util.LruCache;
+import android.text.SpannableStringBuilder;
+import android.text.TextUtils;
+import android.text.style.TextAppearanceSpan;
+
+import com.gh4a.R;
+import com.gh4a.loader.PageIteratorLoader;
+import com.gh4a.utils.ApiHelpers;
+import com.gh4a.utils.StringUtils;
+import com.gh4a.utils.TypefaceCache;
+import com.gh4a.widget.CustomTypefaceSpan;
+import com.gh4a.widget.EllipsizeLineSpan;
+
+/**
+ * Builds the styled title and description of event rows. The loader
+ * prepares them for each page it fetches, so binding a row only needs
+ * to look them up. Rows are cached by event ID, events don't change.
+ *
+ * The context is used for styling, so it needs to have the activity theme.
+ */
+public class EventFormatter implements PageIteratorLoader.ItemPreparer<Event> {
+    // a few pages more than a windowed event list keeps in memory
+    private static final int MAX_CACHED_ROWS = 400;
+
+    private final Context mContext;
+    private final LruCache<String, FormattedEvent> mCache = new LruCache<>(MAX_CACHED_ROWS);
+    // taken from the views the rows were last bound to
+    private volatile int mTitleTypefaceValue = TypefaceCache.TF_REGULAR;
+    private volatile int mDescTypefaceValue = TypefaceCache.TF_REGULAR;
+
+    static class FormattedEvent {
+        final CharSequence title;
+        final CharSequence description;
+        private final int mTitleTypefaceValue;
+        private final int mDescTypefaceValue;
+
+        private FormattedEvent(CharSequence title, CharSequence description,
+                int titleTypefaceValue, int descTypefaceValue) {
+            this.title = title;
+            this.description = description;
+            mTitleTypefaceValue = titleTypefaceValue;
+            mDescTypefaceValue = descTypefaceValue;
+        }
+    }
+
+    public EventFormatter(Context context) {
+        mContext = context;
+    }
+
+    @Override
+    public void prepareItems(List<Event> events) {
+        int titleTypefaceValue = mTitleTypefaceValue;
+        int descTypefaceValue = mDescTypefaceValue;
+        for (Event event : events) {
+            if (event != null && event.getId() != null && mCache.get(event.getId()) == null) {
+                mCache.put(event.getId(), format(event, titleTypefaceValue, descTypefaceValue));
+            }
+        }
+    }
+
+    /**
+     * Returns the formatted event, using the prepared one if it matches the
+     * fonts of the views it's shown in. Must be called on the main thread.
+     */
+    FormattedEvent get(Event event, int titleTypefaceValue, int descTypefaceValue) {
+        mTitleTypefaceValue = titleTypefaceValue;
+        mDescTypefaceValue = descTypefaceValue;
+
+        String id = event.getId();
+        FormattedEvent formatted = id != null ? mCache.get(id) : null;
+        if (formatted == null
+                || formatted.mTitleTypefaceValue != titleTypefaceValue
+                || formatted.mDescTypefaceValue != descTypefaceValue) {
+            formatted = format(event, titleTypefaceValue, descTypefaceValue);
+            if (id != null) {
+                mCache.put(id, formatted);
+            }
+        }
+        return formatted;
+    }
+
+    private FormattedEvent format(Event event, int titleTypefaceValue, int descTypefaceValue) {
+        CharSequence title = StringUtils.applyBoldTags(mContext,
+                formatTitle(event), titleTypefaceValue);
+        CharSequence description = formatDescription(event, descTypefaceValue);
+        return new FormattedEvent(title, description, titleTypefaceValue, descTypefaceValue);
+    }
+
+    private CharSequence formatDescription(Event event, int typefaceValue) {
+        String eventType = event.getType();
+        EventRepository eventRepo = event.getRepo();
+
+        if (EventAdapter.hasInvalidPayload(event)) {
+            return event.getType();
+        }
+
+        Resources res = mContext.getResources();
+
+        if (Event.TYPE_COMMIT_COMMENT.equals(eventType)) {
+            CommitCommentPayload payload = (CommitCommentPayload) event.getPayload();
+            CommitComment comment = payload.getComment();
+            if (comment != null) {
+                return comment.getBody();
+            }
+
+        } else if (Event.TYPE_CREATE.equals(eventType)) {
+            CreatePayload payload = (CreatePayload) event.getPayload();
+            String refType = payload.getRefType();
+            if (CreatePayload.REF_TYPE_REPO.equals(refType)) {
+                return res.getString(R.string.event_create_repo_desc, eventRepo.getName());
+            }
+
+        } else if (Event.TYPE_DOWNLOAD.equals(eventType)) {
+            DownloadPayload payload = (DownloadPayload) event.getPayload();
+            if (payload.getDownload() != null) {
+                return payload.getDownload().getName();
+            }
+
+        } else if (Event.TYPE_FOLLOW.equals(eventType)) {
+            FollowPayload payload = (FollowPayload) event.getPayload();
+            User target = payload.getTarget();
+            if (target != null) {
+                return res.getString(R.string.event_follow_desc,
+                        target.getLogin(), target.getPublicRepos(), target.getFollowers());
+            }
+
+        } else if (Event.TYPE_FORK.equals(eventType)) {
+            ForkPayload payload = (ForkPayload) event.getPayload();
+            return res.getString(R.string.event_fork_desc, formatToRepoName(payload.getForkee()));
+
+        } else if (Event.TYPE_GOLLUM.equals(eventType)) {
+            GollumPayload payload = (GollumPayload) event.getPayload();
+            List<GollumPage> pages = payload.getPages();
+            if (pages != null && !pages.isEmpty()) {
+                return res.getString(R.string.event_gollum_desc, pages.get(0).getPageName());
+            }
+
+        } else if (Event.TYPE_ISSUE_COMMENT.equals(eventType)) {
+            IssueCommentPayload payload = (IssueCommentPayload) event.getPayload();
+            if (payload != null && payload.getComment() != null) {
+                return payload.getComment().getBody();
+            }
+
+        } else if (Event.TYPE_ISSUES.equals(eventType)) {
+            IssuesPayload eventPayload = (IssuesPayload) event.getPayload();
+            return eventPayload.getIssue().getTitle();
+
+        } else if (Event.TYPE_PUBLIC.equals(eventType)) {
+            return null;
+
+        } else if (Event.TYPE_PULL_REQUEST.equals(eventType)) {
+            PullRequestPayload payload = (PullRequestPayload) event.getPayload();
+            PullRequest pullRequest = payload.getPullRequest();
+
+            if (!StringUtils.isBlank(pullRequest.getTitle())) {
+                return res.getString(R.string.event_pull_request_desc,
+                        pullRequest.getTitle(), pullRequest.getCommits(),
+                        pullRequest.getAdditions(), pullRequest.getDeletions());
+            }
+
+        } else if (Event.TYPE_PULL_REQUEST_REVIEW_COMMENT.equals(eventType)) {
+            PullRequestReviewCommentPayload payload =
+                    (PullRequestReviewCommentPayload) event.getPayload();
+            CommitComment comment = payload.getComment();
+            if (comment != null) {
+                return comment.getBody();
+            }
+
+        } else if (Event.TYPE_PUSH.equals(eventType)) {
+            PushPayload payload = (PushPayload) event.getPayload();
+            List<Commit> commits = payload.getCommits();
+
+            if (commits != null && !commits.isEmpty()) {
+                SpannableStringBuilder ssb = new SpannableStringBuilder();
+                float density = mContext.getResources().getDisplayMetrics().density;
+                int bottomMargin = Math.round(2 /* dp */ * density);
+                int count = commits.size();
+                int maxLines =
+                        mContext.getResources().getInteger(R.integer.event_description_max_lines);
+                int max = count > maxLines ? maxLines - 1 : count;
+
+                for (int i = 0; i < max; i++) {
+                    Commit commit = commits.get(i);
+                    if (i != 0) {
+                        ssb.append("\n");
+                    }
+
+                    int lastLength = ssb.length();
+                    String sha = commit.getSha().substring(0, 7);
+
+                    ssb.append(sha);
+                    ssb.setSpan(new TextAppearanceSpan(mContext, R.style.small_highlighted_sha),
+                            ssb.length() - sha.length(), ssb.length(), 0);
+
+                    ssb.append(" ");
+                    ssb.append(getFirstLine(commit.getMessage()));
+                    ssb.setSpan(new EllipsizeLineSpan(i == (count - 1) ? 0 : bottomMargin),
+                            lastLength, ssb.length(), 0);
+                }
+                if (count > maxLines) {
+                    String text = res.getString(R.string.event_push_desc, count - max);
+                    ssb.append("\n");
+                    ssb.append(text);
+                    ssb.setSpan(new CustomTypefaceSpan(mContext, typefaceValue, Typeface.ITALIC),
+                            ssb.length() - text.length(), ssb.length(), 0);
+                }
+                return ssb;
+            } else if (eventRepo == null) {
+                return mContext.getString(R.string.deleted);
+            }
+
+        } else if (Event.TYPE_RELEASE.equals(eventType)) {
+            ReleasePayload payload = (ReleasePayload) event.getPayload();
+            Release release = payload.getRelease();
+            if (release != null) {
+                if (!TextUtils.isEmpty(release.getName())) {
+                    return release.getName();
+                }
+                return release.getTagName();
+            }
+
+        } else if (Event.TYPE_TEAM_ADD.equals(eventType)) {
+            TeamAddPayload payload = (TeamAddPayload) event.getPayload();
+            Team team = payload.getTeam();
+            if (team != null) {
+                return res.getString(R.string.event_team_add_desc, team.getName(),
+                        team.getMembersCount(), team.getReposCount());
+            }
+        }
+
+        return null;
+    }
+
+    private String getFirstLine(String input) {
+        if (input == null) {
+            return null;
+        }
+        int pos = input.indexOf('\n');
+        if (pos < 0) {
+            return input;
+        }
+        return input.substring(0, pos);
+    }
+
+    private String formatTitle(Event event) {
+        String eventType = event.getType();
+        EventRepository eventRepo = event.getRepo();
+        Resources res = mContext.getResources();
+
+        if (EventAdapter.hasInvalidPayload(event)) {
+            return event.getType();
+        }
+
+        if (Event.TYPE_COMMIT_COMMENT.equals(eventType)) {
+            CommitCommentPayload payload = (CommitCommentPayload) event.getPayload();
+            return res.getString(R.string.event_commit_comment_title,
+                    payload.getComment().getCommitId().substring(0, 7),
+                    formatFromRepoName(eventRepo));
+
+        } else if (Event.TYPE_CREATE.equals(eventType)) {
+            CreatePayload payload = (CreatePayload) event.getPayload();
+            String type = payload.getRefType();
+            if (CreatePayload.REF_TYPE_REPO.equals(type)) {
+                return res.getString(R.string.event_create_repo_title);
+            } else if (CreatePayload.REF_TYPE_BRANCH.equals(type)
+                    || CreatePayload.REF_TYPE_TAG.equals(type)) {
+                int resId = CreatePayload.REF_TYPE_BRANCH.equals(type)
+                        ? R.string.event_create_branch_title : R.string.event_create_tag_title;
+                return res.getString(resId, payload.getRef(), formatFromRepoName(eventRepo));
+            }
+
+        } else if (Event.TYPE_DELETE.equals(eventType)) {
+            DeletePayload payload = (DeletePayload) event.getPayload();
+            String type = payload.getRefType();
+            if (DeletePayload.REF_TYPE_BRANCH.equals(type)
+                    || DeletePayload.REF_TYPE_TAG.equals(type)) {
+                int resId = CreatePayload.REF_TYPE_BRANCH.equals(type)
+                        ? R.string.event_delete_branch_title : R.string.event_delete_tag_title;
+                return res.getString(resId, payload.getRef(), formatFromRepoName(eventRepo));
+            }
+
+        } else if (Event.TYPE_DOWNLOAD.equals(eventType)) {
+            return res.getString(R.string.event_download_title, formatFromRepoName(eventRepo));
+
+        } else if (Event.TYPE_FOLLOW.equals(eventType)) {
+            FollowPayload payload = (FollowPayload) event.getPayload();
+            return res.getString(R.string.event_follow_title,
+                    ApiHelpers.getUserLogin(mContext, payload.getTarget()));
+
+        } else if (Event.TYPE_FORK.equals(event.getType())) {
+            return res.getString(R.string.event_fork_title, formatFromRepoName(eventRepo));
+
+        } else if (Event.TYPE_FORK_APPLY.equals(eventType)) {
+            return res.getString(R.string.event_fork_apply_title, formatFromRepoName(eventRepo));
+
+        } else if (Event.TYPE_GIST.equals(eventType)) {
+            GistPayload payload = (GistPayload) event.getPayload();
+            Gist gist = payload.getGist();
+
+            String id = gist != null ? gist.getId() : mContext.getString(R.string.deleted);
+            int resId = TextUtils.equals(payload.getAction(), GistPayload.ACTION_UPDATE)
+                    ? R.string.event_update_gist_title : R.string.event_create_gist_title;
+            return res.getString(resId, id);
+
+        } else if (Event.TYPE_GOLLUM.equals(eventType)) {
+            GollumPayload payload = (GollumPayload) event.getPayload();
+            List<GollumPage> pages = payload.getPages();
+            int count = pages == null ? 0 : pages.size();
+            return res.getString(R.string.event_gollum_title,
+                    res.getQuantityString(R.plurals.page, count, count),
+                    formatFromRepoName(eventRepo));
+
+        } else if (Event.TYPE_ISSUE_COMMENT.equals(eventType)) {
+            IssueCommentPayload payload = (IssueCommentPayload) event.getPayload();
+            Issue issue = payload.getIssue();
+            if (issue != null) {
+                int formatResId = issue.getPullRequest() != null
+                        ? R.string.event_pull_request_comment : R.string.event_issue_comment;
+                return res.getString(formatResId, issue.getNumber(), formatFromRepoName(eventRepo));
+            }
+
+        } else if (Event.TYPE_ISSUES.equals(eventType)) {
+            IssuesPayload payload = (IssuesPayload) event.getPayload();
+            final int resId;
+            switch (payload.getAction()) {
+                case IssuesPayload.ACTION_OPEN: resId = R.string.event_issues_open_title; break;
+                case IssuesPayload.ACTION_CLOSE: resId = R.string.event_issues_close_title; break;
+                case IssuesPayload.ACTION_REOPEN: resId = R.string.event_issues_reopen_title; break;
+                default: return "";
+            }
+            return res.getString(resId, payload.getIssue().getNumber(),
+                    formatFromRepoName(eventRepo));
+
+        } else if (Event.TYPE_MEMBER.equals(eventType)) {
+            MemberPayload payload = (MemberPayload) event.getPayload();
+            return res.getString(R.string.event_member_title,
+                    ApiHelpers.getUserLogin(mContext, payload.getMember()),
+                    formatFromRepoName(eventRepo));
+
+        } else if (Event.TYPE_PUBLIC.equals(eventType)) {
+            return res.getString(R.string.event_public_title, formatFromRepoName(eventRepo));
+
+        } else if (Event.TYPE_PULL_REQUEST.equals(eventType)) {
+            PullRequestPayload payload = (PullRequestPayload) event.getPayload();
+            PullRequest pr = payload.getPullRequest();
+            final int resId;
+            switch (payload.getAction()) {
+                case PullRequestPayload.ACTION_OPEN:
+                    resId = R.string.event_pr_open_title;
+                    break;
+                case PullRequestPayload.ACTION_CLOSE:
+                    resId = pr.isMerged() ? R.string.event_pr_merge_title : R.string.event_pr_close_title;
+                    break;
+                case PullRequestPayload.ACTION_REOPEN:
+                    resId = R.string.event_pr_reopen_title;
+                    break;
+                case PullRequestPayload.ACTION_SYNCHRONIZE:
+                    resId = R.string.event_pr_update_title;
+                    break;
+                default:
+                    return "";
+            }
+            return res.getString(resId, payload.getNumber(), formatFromRepoName(eventRepo));
+
+        } else if (Event.TYPE_PULL_REQUEST_REVIEW_COMMENT.equals(eventType)) {
+            PullRequestReviewCommentPayload payload =
+                    (PullRequestReviewCommentPayload) event.getPayload();
+            PullRequest pr = payload.getPullRequest();
+            CommitComment comment = payload.getComment();
+            if (pr != null) {
+                return res.getString(R.string.event_pull_request_review_comment_title,
+                        pr.getNumber(), formatFromRepoName(eventRepo));
+            } else if (comment != null) {
+                return res.getString(R.string.event_commit_comment_title,
+                        comment.getCommitId().substring(0, 7), formatFromRepoName(eventRepo));
+            }
+
+        } else if (Event.TYPE_PUSH.equals(eventType)) {
+            PushPayload payload = (PushPayload) event.getPayload();
+            String ref = payload.getRef();
+            if (ref.startsWith("refs/heads/")) {
+                ref = ref.substring(11);
+            }
+            return res.getString(R.string.event_push_title, ref, formatFromRepoName(eventRepo));
+
+        } else if (Event.TYPE_RELEASE.equals(eventType)) {
+            return res.getString(R.string.event_release_title, formatFromRepoName(eventRepo));
+
+        } else if (Event.TYPE_TEAM_ADD.equals(eventType)) {
+            TeamAddPayload payload = (TeamAddPayload) event.getPayload();
+            Team team = payload.getTeam();
+            if (team != null) {
+                Repository repo = payload.getRepo();
+                if (repo != null) {
+                    return res.getString(R.string.event_team_repo_add,
+                            formatToRepoName(repo), team.getName());
+                } else {
+                    return res.getString(R.string.event_team_user_add,
+                            ApiHelpers.getUserLogin(mContext, payload.getUser()), team.getName());
+                }
+            }
+
+        } else if (Event.TYPE_WATCH.equals(eventType)) {
+            return res.getString(R.string.event_watch_title, formatFromRepoName(eventRepo));
+        }
+
+        return "";
+    }
+
+    private String formatFromRepoName(EventRepository repository) {
+        if (repository != null) {
+            return repository.getName();
+        }
+        return mContext.getString(R.string.deleted);
+    }
+
+    private String formatToRepoName(Repository repository) {
+        if (repository != null && repository.getOwner() != null) {
+            return repository.getOwner().getLogin() + "/" + repository.getName();
+        }
+        return mContext.getString(R.string.deleted);
+    }
+}
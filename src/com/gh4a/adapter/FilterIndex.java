@@ -0,0 +1,110 @@
+package com.gh4a.adapter;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trigram index for substring search in a fixed list of texts. A query of at
+ * least three characters only needs to check the texts containing its rarest
+ * trigram, shorter queries check all texts.
+ *
+ * Texts and queries are expected to be lower case already.
+ */
+class FilterIndex {
+    private static final int[] NO_POSITIONS = new int[0];
+
+    private final String[] mTexts;
+    // trigram -> ascending positions of the texts containing it
+    private final HashMap<Long, int[]> mPostings = new HashMap<>();
+
+    public FilterIndex(List<String> texts) {
+        mTexts = texts.toArray(new String[texts.size()]);
+
+        HashMap<Long, PositionList> postings = new HashMap<>();
+        for (int i = 0; i < mTexts.length; i++) {
+            String text = mTexts[i];
+            for (int j = 0; j + 3 <= text.length(); j++) {
+                Long trigram = getTrigram(text, j);
+                PositionList positions = postings.get(trigram);
+                if (positions == null) {
+                    positions = new PositionList();
+                    postings.put(trigram, positions);
+                }
+                positions.add(i);
+            }
+        }
+        for (Map.Entry<Long, PositionList> entry : postings.entrySet()) {
+            mPostings.put(entry.getKey(), entry.getValue().toArray());
+        }
+    }
+
+    public int size() {
+        return mTexts.length;
+    }
+
+    /**
+     * Returns the ascending positions of the texts containing the query.
+     *
+     * @param candidates ascending positions that contain all matches, e.g. the
+     *                   result for a query contained in this one, or null
+     */
+    public int[] find(String query, int[] candidates) {
+        int[] base = candidates;
+        for (int j = 0; j + 3 <= query.length(); j++) {
+            int[] positions = mPostings.get(getTrigram(query, j));
+            if (positions == null) {
+                return NO_POSITIONS;
+            }
+            if (base == null || positions.length < base.length) {
+                base = positions;
+            }
+        }
+
+        int[] matches;
+        int count = 0;
+        if (base != null) {
+            matches = new int[base.length];
+            for (int position : base) {
+                if (mTexts[position].contains(query)) {
+                    matches[count++] = position;
+                }
+            }
+        } else {
+            matches = new int[mTexts.length];
+            for (int i = 0; i < mTexts.length; i++) {
+                if (mTexts[i].contains(query)) {
+                    matches[count++] = i;
+                }
+            }
+        }
+        return count == matches.length ? matches : Arrays.copyOf(matches, count);
+    }
+
+    private static class PositionList {
+        private int[] mPositions = new int[4];
+        private int mSize;
+
+        void add(int position) {
+            // a trigram may occur more than once in a text
+            if (mSize > 0 && mPositions[mSize - 1] == position) {
+                return;
+            }
+            if (mSize == mPositions.length) {
+                mPositions = Arrays.copyOf(mPositions, mSize * 2);
+            }
+            mPositions[mSize++] = position;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(mPositions, mSize);
+        }
+    }
+
+    private static Long getTrigram(String text, int start) {
+        return ((long) text.charAt(start) << 32)
+                | ((long) text.charAt(start + 1) << 16)
+                | text.charAt(start + 2);
+    }
+}
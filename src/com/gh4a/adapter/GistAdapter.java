@@ -28,7 +28,9 @@ import android.widget.TextView;
 
 import com.gh4a.R;
 import com.gh4a.utils.ApiHelpers;
-import com.gh4a.utils.StringUtils;
+import com.gh4a.utils.RelativeTimeTicker;
+
+import java.util.Date;
 
 public class GistAdapter extends RootAdapter<Gist, GistAdapter.ViewHolder> {
     private String mOwnerLogin;
@@ -56,8 +58,7 @@ public class GistAdapter extends RootAdapter<Gist, GistAdapter.ViewHolder> {
             holder.tvCreator.setVisibility(View.VISIBLE);
         }
 
-        holder.tvTimestamp.setText(
-                StringUtils.formatRelativeTime(mContext, gist.getCreatedAt(), false));
+        RelativeTimeTicker.setText(holder.tvTimestamp, gist.getCreatedAt(), false);
         holder.tvTitle.setText(TextUtils.isEmpty(gist.getDescription())
                 ? mContext.getString(R.string.gist_no_description) : gist.getDescription());
         holder.tvSha.setText(gist.getId());
@@ -65,6 +66,17 @@ public class GistAdapter extends RootAdapter<Gist, GistAdapter.ViewHolder> {
         holder.tvPrivate.setVisibility(gist.isPublic() ? View.GONE : View.VISIBLE);
     }
 
+    @Override
+    protected Object getItemKey(Gist gist) {
+        return gist.getId();
+    }
+
+    @Override
+    protected boolean areContentsTheSame(Gist oldGist, Gist newGist) {
+        Date oldUpdate = oldGist.getUpdatedAt();
+        return oldUpdate != null && oldUpdate.equals(newGist.getUpdatedAt());
+    }
+
     public static class ViewHolder extends RecyclerView.ViewHolder {
         private ViewHolder(View view) {
             super(view);
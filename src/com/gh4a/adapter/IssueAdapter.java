@@ -28,7 +28,7 @@ import com.gh4a.R;
 import com.gh4a.utils.ApiHelpers;
 import com.gh4a.utils.AvatarHandler;
 import com.gh4a.utils.IntentUtils;
-import com.gh4a.utils.StringUtils;
+import com.gh4a.utils.RelativeTimeTicker;
 import com.gh4a.widget.LabelBadgeView;
 
 import org.eclipse.egit.github.core.Issue;
@@ -55,8 +55,7 @@ public class IssueAdapter extends RootAdapter<Issue, IssueAdapter.ViewHolder> {
         holder.tvNumber.setText("#" + issue.getNumber());
         holder.tvDesc.setText(issue.getTitle());
         holder.tvCreator.setText(ApiHelpers.getUserLogin(mContext, issue.getUser()));
-        holder.tvTimestamp.setText(StringUtils.formatRelativeTime(mContext,
-                issue.getCreatedAt(), true));
+        RelativeTimeTicker.setText(holder.tvTimestamp, issue.getCreatedAt(), true);
 
         if (issue.getComments() > 0) {
             holder.tvComments.setVisibility(View.VISIBLE);
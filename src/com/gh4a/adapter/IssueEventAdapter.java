@@ -44,6 +44,7 @@ import com.gh4a.utils.ApiHelpers;
 import com.gh4a.utils.FileUtils;
 import com.gh4a.utils.AvatarHandler;
 import com.gh4a.utils.IntentUtils;
+import com.gh4a.utils.RelativeTimeTicker;
 import com.gh4a.utils.StringUtils;
 import com.gh4a.utils.UiUtils;
 import com.gh4a.widget.IssueLabelSpan;
@@ -51,6 +52,7 @@ import com.gh4a.widget.StyleableTextView;
 import com.github.mobile.util.HtmlUtils;
 import com.github.mobile.util.HttpImageGetter;
 
+import java.util.Date;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -105,8 +107,7 @@ public class IssueEventAdapter extends RootAdapter<IssueEventHolder, IssueEventA
         StringUtils.applyBoldTagsAndSetText(holder.tvExtra,
                 mContext.getString(R.string.issue_comment_header,
                         ApiHelpers.getUserLogin(mContext, event.getUser())));
-        holder.tvTimestamp.setText(StringUtils.formatRelativeTime(mContext,
-                event.getCreatedAt(), true));
+        RelativeTimeTicker.setText(holder.tvTimestamp, event.getCreatedAt(), true);
 
         if (event.comment instanceof CommitComment) {
             CommitComment commitComment = (CommitComment) event.comment;
@@ -121,7 +122,11 @@ public class IssueEventAdapter extends RootAdapter<IssueEventHolder, IssueEventA
 
         if (event.comment != null) {
             String body = HtmlUtils.format(event.comment.getBodyHtml()).toString();
-            mImageGetter.bind(holder.tvDesc, body, event.comment.getId());
+            // rendered comments are cached per ID, edited ones need a different one
+            Date updatedAt = event.comment.getUpdatedAt();
+            Object id = updatedAt != null
+                    ? getItemKey(event) + "@" + updatedAt.getTime() : getItemKey(event);
+            mImageGetter.bind(holder.tvDesc, body, id);
         } else {
             holder.tvDesc.setTag(null);
             holder.tvDesc.setText(formatEvent(event.event, event.getUser(),
@@ -261,6 +266,31 @@ public class IssueEventAdapter extends RootAdapter<IssueEventHolder, IssueEventA
     @Override
     public void clear() {
         super.clear();
+        resetImageGetter();
+    }
+
+    @Override
+    protected Object getItemKey(IssueEventHolder event) {
+        if (event.comment instanceof CommitComment) {
+            return "review_comment:" + event.comment.getId();
+        } else if (event.comment != null) {
+            return "comment:" + event.comment.getId();
+        }
+        return "event:" + event.event.getId();
+    }
+
+    @Override
+    protected boolean areContentsTheSame(IssueEventHolder oldEvent, IssueEventHolder newEvent) {
+        if (oldEvent.comment == null) {
+            // events can't be edited
+            return true;
+        }
+        Date oldUpdate = oldEvent.comment.getUpdatedAt();
+        return oldUpdate != null && oldUpdate.equals(newEvent.comment.getUpdatedAt())
+                && TextUtils.equals(oldEvent.comment.getBodyHtml(), newEvent.comment.getBodyHtml());
+    }
+
+    private void resetImageGetter() {
         boolean resumed = mImageGetter.isResumed();
         mImageGetter.destroy();
         mImageGetter = new HttpImageGetter(mContext);
@@ -0,0 +1,205 @@
+package com.gh4a.adapter;
+
+import android.support.v7.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The changes that turn one item list into another, as RecyclerView adapter
+ * notifications. Items are matched via {@link RootAdapter#getItemKey}. The
+ * largest set of items that kept their relative order stays in place, all
+ * other surviving items are reported as moves, and matched items whose
+ * contents differ as changes.
+ *
+ * Computing a diff doesn't touch the adapter state, so it can be done on a
+ * background thread; dispatching must happen on the main thread, right after
+ * the adapter switched to the new list.
+ */
+class ListDiff {
+    private static final int OP_REMOVE = 0;
+    private static final int OP_INSERT = 1;
+    private static final int OP_MOVE = 2;
+    private static final int OP_CHANGE = 3;
+
+    // { type, position (or move source), count (or move target) }
+    private final ArrayList<int[]> mOps = new ArrayList<>();
+
+    private ListDiff() {
+    }
+
+    /**
+     * @return the diff, or null if the items can't be matched because
+     *         keys are missing or not unique
+     */
+    public static <T> ListDiff compute(RootAdapter<T, ?> adapter,
+            List<T> oldItems, List<T> newItems) {
+        HashMap<Object, Integer> oldPositions = getKeyPositions(adapter, oldItems);
+        HashMap<Object, Integer> newPositions = getKeyPositions(adapter, newItems);
+        if (oldPositions == null || newPositions == null) {
+            return null;
+        }
+
+        ListDiff diff = new ListDiff();
+        ArrayList<Object> current = new ArrayList<>(oldItems.size());
+        for (T item : oldItems) {
+            current.add(adapter.getItemKey(item));
+        }
+        Object[] newKeys = new Object[newItems.size()];
+        for (int i = 0; i < newKeys.length; i++) {
+            newKeys[i] = adapter.getItemKey(newItems.get(i));
+        }
+
+        // back to front, so the positions of the following removals stay valid
+        for (int i = current.size() - 1; i >= 0; i--) {
+            if (!newPositions.containsKey(current.get(i))) {
+                current.remove(i);
+                diff.addRemove(i);
+            }
+        }
+
+        int[] targets = new int[current.size()];
+        for (int i = 0; i < targets.length; i++) {
+            targets[i] = newPositions.get(current.get(i));
+        }
+        boolean[] stable = new boolean[newKeys.length];
+        for (int target : getIncreasingSubsequence(targets)) {
+            stable[target] = true;
+        }
+
+        // put everything else right behind its new predecessor, in order
+        for (int i = 0; i < newKeys.length; i++) {
+            if (stable[i]) {
+                continue;
+            }
+            int to = i == 0 ? 0 : current.indexOf(newKeys[i - 1]) + 1;
+            if (oldPositions.containsKey(newKeys[i])) {
+                int from = current.indexOf(newKeys[i]);
+                current.remove(from);
+                if (from < to) {
+                    to--;
+                }
+                current.add(to, newKeys[i]);
+                diff.mOps.add(new int[] { OP_MOVE, from, to });
+            } else {
+                current.add(to, newKeys[i]);
+                diff.addInsert(to);
+            }
+        }
+
+        for (int i = 0; i < newKeys.length; i++) {
+            Integer oldPosition = oldPositions.get(newKeys[i]);
+            if (oldPosition != null && !adapter.areContentsTheSame(
+                    oldItems.get(oldPosition), newItems.get(i))) {
+                diff.addChange(i);
+            }
+        }
+
+        return diff;
+    }
+
+    public boolean isEmpty() {
+        return mOps.isEmpty();
+    }
+
+    /**
+     * @param offset adapter position of the first item, e.g. 1 if there's a header
+     */
+    public void dispatch(RecyclerView.Adapter<?> adapter, int offset) {
+        for (int[] op : mOps) {
+            switch (op[0]) {
+                case OP_REMOVE:
+                    adapter.notifyItemRangeRemoved(op[1] + offset, op[2]);
+                    break;
+                case OP_INSERT:
+                    adapter.notifyItemRangeInserted(op[1] + offset, op[2]);
+                    break;
+                case OP_MOVE:
+                    adapter.notifyItemMoved(op[1] + offset, op[2] + offset);
+                    break;
+                case OP_CHANGE:
+                    adapter.notifyItemRangeChanged(op[1] + offset, op[2]);
+                    break;
+            }
+        }
+    }
+
+    private void addRemove(int position) {
+        int[] last = getLastOp(OP_REMOVE);
+        if (last != null && last[1] == position + 1) {
+            last[1] = position;
+            last[2]++;
+        } else {
+            mOps.add(new int[] { OP_REMOVE, position, 1 });
+        }
+    }
+
+    private void addInsert(int position) {
+        int[] last = getLastOp(OP_INSERT);
+        if (last != null && last[1] + last[2] == position) {
+            last[2]++;
+        } else {
+            mOps.add(new int[] { OP_INSERT, position, 1 });
+        }
+    }
+
+    private void addChange(int position) {
+        int[] last = getLastOp(OP_CHANGE);
+        if (last != null && last[1] + last[2] == position) {
+            last[2]++;
+        } else {
+            mOps.add(new int[] { OP_CHANGE, position, 1 });
+        }
+    }
+
+    private int[] getLastOp(int type) {
+        int[] last = mOps.isEmpty() ? null : mOps.get(mOps.size() - 1);
+        return last != null && last[0] == type ? last : null;
+    }
+
+    private static <T> HashMap<Object, Integer> getKeyPositions(
+            RootAdapter<T, ?> adapter, List<T> items) {
+        HashMap<Object, Integer> positions = new HashMap<>(items.size() * 2);
+        for (int i = 0; i < items.size(); i++) {
+            Object key = adapter.getItemKey(items.get(i));
+            if (key == null || positions.put(key, i) != null) {
+                return null;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Returns the values of a longest strictly increasing subsequence.
+     */
+    private static int[] getIncreasingSubsequence(int[] values) {
+        // tails[l] is the index of the smallest value ending a subsequence of length l + 1
+        int[] tails = new int[values.length];
+        int[] predecessors = new int[values.length];
+        int length = 0;
+        for (int i = 0; i < values.length; i++) {
+            int low = 0, high = length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[tails[mid]] < values[i]) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            predecessors[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if (low == length) {
+                length++;
+            }
+        }
+
+        int[] result = new int[length];
+        for (int i = length - 1, index = length > 0 ? tails[length - 1] : -1; i >= 0; i--) {
+            result[i] = values[index];
+            index = predecessors[index];
+        }
+        return result;
+    }
+}
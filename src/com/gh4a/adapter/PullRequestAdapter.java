@@ -31,7 +31,7 @@ import com.gh4a.R;
 import com.gh4a.utils.ApiHelpers;
 import com.gh4a.utils.AvatarHandler;
 import com.gh4a.utils.IntentUtils;
-import com.gh4a.utils.StringUtils;
+import com.gh4a.utils.RelativeTimeTicker;
 
 public class PullRequestAdapter extends RootAdapter<PullRequest, PullRequestAdapter.ViewHolder> {
     public PullRequestAdapter(Context context) {
@@ -58,8 +58,7 @@ public class PullRequestAdapter extends RootAdapter<PullRequest, PullRequestAdap
         holder.tvNumber.setText("#" + pullRequest.getNumber());
         holder.tvDesc.setText(pullRequest.getTitle());
         holder.tvCreator.setText(ApiHelpers.getUserLogin(mContext, user));
-        holder.tvTimestamp.setText(
-                StringUtils.formatRelativeTime(mContext, pullRequest.getCreatedAt(), true));
+        RelativeTimeTicker.setText(holder.tvTimestamp, pullRequest.getCreatedAt(), true);
 
         int comments = pullRequest.getComments() + pullRequest.getReviewComments();
         if (comments > 0) {
@@ -15,12 +15,11 @@
  */
 package com.gh4a.adapter;
 
-import java.util.Locale;
-
 import org.eclipse.egit.github.core.Repository;
 
 import android.content.Context;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
 import android.text.format.Formatter;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -63,10 +62,23 @@ public class RepositoryAdapter extends RootAdapter<Repository, RepositoryAdapter
     }
 
     @Override
-    protected boolean isFiltered(CharSequence filter, Repository repo) {
-        String lcFilter = filter.toString().toLowerCase(Locale.getDefault());
-        String name = repo.getName().toLowerCase(Locale.getDefault());
-        return name.contains(lcFilter);
+    protected Object getItemKey(Repository repository) {
+        return repository.getId();
+    }
+
+    @Override
+    protected boolean areContentsTheSame(Repository oldRepo, Repository newRepo) {
+        return oldRepo.getWatchers() == newRepo.getWatchers()
+                && oldRepo.getForks() == newRepo.getForks()
+                && oldRepo.getSize() == newRepo.getSize()
+                && oldRepo.isPrivate() == newRepo.isPrivate()
+                && TextUtils.equals(oldRepo.getDescription(), newRepo.getDescription())
+                && TextUtils.equals(oldRepo.getLanguage(), newRepo.getLanguage());
+    }
+
+    @Override
+    protected CharSequence getFilterText(Repository repo) {
+        return repo.getName();
     }
 
     public static class ViewHolder extends RecyclerView.ViewHolder {
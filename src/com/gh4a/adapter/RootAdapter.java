@@ -18,8 +18,11 @@ package com.gh4a.adapter;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Locale;
 
 import android.content.Context;
+import android.os.AsyncTask;
+import android.support.v4.os.AsyncTaskCompat;
 import android.support.v7.widget.RecyclerView;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
@@ -28,6 +31,8 @@ import android.view.ViewGroup;
 import android.widget.Filter;
 import android.widget.Filterable;
 
+import com.gh4a.R;
+
 /**
  * The Root adapter.
  *
@@ -48,6 +53,12 @@ public abstract class RootAdapter<T, VH extends RecyclerView.ViewHolder>
      */
     private List<T> mObjects;
     private List<T> mUnfilteredObjects;
+    private CharSequence mFilterConstraint;
+    // incremented by every change of the objects, to detect outdated diffs
+    private int mModCount;
+    // incremented by changes of the unfiltered objects, to detect an outdated filter index
+    private volatile int mDataVersion;
+    private ItemDiffTask mDiffTask;
 
     /**
      * The context.
@@ -63,8 +74,16 @@ public abstract class RootAdapter<T, VH extends RecyclerView.ViewHolder>
     private static final int VIEW_TYPE_ITEM = 0;
     private static final int VIEW_TYPE_HEADER = 1;
     private static final int VIEW_TYPE_FOOTER = 2;
+    private static final int VIEW_TYPE_PLACEHOLDER = 3;
 
     private Filter mFilter = new Filter() {
+        // only used on the filter thread
+        private List<T> mIndexedObjects;
+        private FilterIndex mIndex;
+        private int mIndexVersion;
+        private String mLastQuery;
+        private int[] mLastMatches;
+
         @Override
         protected FilterResults performFiltering(CharSequence constraint) {
             FilterResults results = new FilterResults();
@@ -72,22 +91,47 @@ public abstract class RootAdapter<T, VH extends RecyclerView.ViewHolder>
                 results.values = mUnfilteredObjects;
                 results.count = mUnfilteredObjects.size();
             } else {
-                final ArrayList<T> filtered = new ArrayList<>();
-                for (T object : mUnfilteredObjects) {
-                    if (isFiltered(constraint, object)) {
-                        filtered.add(object);
-                    }
-                }
+                List<T> filtered = findObjects(constraint);
                 results.values = filtered;
                 results.count = filtered.size();
             }
             return results;
         }
 
+        private List<T> findObjects(CharSequence constraint) {
+            int version = mDataVersion;
+            if (mIndex == null || mIndexVersion != version) {
+                mIndexedObjects = new ArrayList<>(mUnfilteredObjects);
+                mIndex = buildFilterIndex(mIndexedObjects);
+                mIndexVersion = version;
+                mLastQuery = null;
+                mLastMatches = null;
+            }
+            if (mIndex == null) {
+                return filterObjects(mIndexedObjects, constraint);
+            }
+
+            String query = constraint.toString().toLowerCase(Locale.getDefault());
+            // a longer query can only match a subset of what the previous one matched
+            int[] candidates = mLastQuery != null && query.contains(mLastQuery)
+                    ? mLastMatches : null;
+            int[] matches = mIndex.find(query, candidates);
+            mLastQuery = query;
+            mLastMatches = matches;
+
+            ArrayList<T> filtered = new ArrayList<>(matches.length);
+            for (int position : matches) {
+                filtered.add(mIndexedObjects.get(position));
+            }
+            return filtered;
+        }
+
         @SuppressWarnings("unchecked")
         @Override
         protected void publishResults(CharSequence constraint, FilterResults results) {
             mObjects = (List<T>) results.values;
+            mFilterConstraint = constraint;
+            mModCount++;
             notifyDataSetChanged();
         }
     };
@@ -133,6 +177,8 @@ public abstract class RootAdapter<T, VH extends RecyclerView.ViewHolder>
             return VIEW_TYPE_HEADER;
         } else if (mFooterView != null && position == itemStart + mObjects.size()) {
             return VIEW_TYPE_FOOTER;
+        } else if (mObjects.get(position - itemStart) == null) {
+            return VIEW_TYPE_PLACEHOLDER;
         } else {
             return VIEW_TYPE_ITEM;
         }
@@ -142,6 +188,10 @@ public abstract class RootAdapter<T, VH extends RecyclerView.ViewHolder>
         return mObjects.size();
     }
 
+    public int getHeaderCount() {
+        return mHeaderView != null ? 1 : 0;
+    }
+
     public T getItem(int position) {
         return mObjects.get(position);
     }
@@ -158,28 +208,142 @@ public abstract class RootAdapter<T, VH extends RecyclerView.ViewHolder>
     public void add(T object) {
         mUnfilteredObjects.add(object);
         mObjects.add(object);
+        mModCount++;
+        mDataVersion++;
     }
 
     public void addAll(Collection<T> objects) {
-        if (objects != null) {
+        if (objects != null && !objects.isEmpty()) {
+            mModCount++;
+            mDataVersion++;
+            int start = mObjects.size() + (mHeaderView != null ? 1 : 0);
             mUnfilteredObjects.addAll(objects);
             mObjects.addAll(objects);
-            notifyDataSetChanged();
+            // existing items are unaffected, so don't rebind them
+            notifyItemRangeInserted(start, objects.size());
         }
     }
 
     public void remove(T object) {
         mUnfilteredObjects.remove(object);
         mObjects.remove(object);
+        mModCount++;
+        mDataVersion++;
         notifyDataSetChanged();
     }
 
     public void clear() {
-        mUnfilteredObjects.clear();
-        mObjects.clear();
+        cancelItemDiff();
+        // new lists, the old ones might be backing lists
+        mUnfilteredObjects = new ArrayList<>();
+        mObjects = new ArrayList<>();
+        mModCount++;
+        mDataVersion++;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Makes the adapter show the given list itself instead of a copy. Null
+     * elements are shown as placeholders. The caller needs to notify the
+     * adapter of changes, and the adapter must not be changed otherwise
+     * until {@link #clear} is called. Filtering isn't supported.
+     */
+    public void setBackingList(List<T> objects) {
+        cancelItemDiff();
+        mUnfilteredObjects = objects;
+        mObjects = objects;
+        mModCount++;
+        mDataVersion++;
         notifyDataSetChanged();
     }
 
+    /**
+     * Notifies about objects added to the backing list, in list positions.
+     */
+    public void notifyObjectsInserted(int position, int count) {
+        mModCount++;
+        mDataVersion++;
+        notifyItemRangeInserted(position + (mHeaderView != null ? 1 : 0), count);
+    }
+
+    /**
+     * Notifies about objects changed in the backing list, in list positions.
+     */
+    public void notifyObjectsChanged(int position, int count) {
+        mModCount++;
+        mDataVersion++;
+        notifyItemRangeChanged(position + (mHeaderView != null ? 1 : 0), count);
+    }
+
+    /**
+     * Replaces all objects, e.g. after a reload. If the adapter isn't empty
+     * and {@link #getItemKey} identifies the objects, the old and new lists
+     * are compared in the background and only the objects that were added,
+     * removed, moved or changed are updated. That keeps the views and the
+     * scroll position of everything else.
+     */
+    public void setItems(List<T> objects) {
+        cancelItemDiff();
+        if (mObjects.isEmpty() || objects.isEmpty()) {
+            // nothing to compare
+            List<T> visibleObjects = TextUtils.isEmpty(mFilterConstraint)
+                    ? new ArrayList<>(objects) : filterObjects(objects, mFilterConstraint);
+            applyItems(objects, visibleObjects, null);
+        } else {
+            mDiffTask = new ItemDiffTask(objects);
+            AsyncTaskCompat.executeParallel(mDiffTask);
+        }
+    }
+
+    private void cancelItemDiff() {
+        if (mDiffTask != null) {
+            mDiffTask.cancel(false);
+            mDiffTask = null;
+        }
+    }
+
+    private void applyItems(List<T> objects, List<T> visibleObjects, ListDiff diff) {
+        mUnfilteredObjects = new ArrayList<>(objects);
+        mObjects = visibleObjects;
+        mModCount++;
+        mDataVersion++;
+        if (diff != null) {
+            diff.dispatch(this, mHeaderView != null ? 1 : 0);
+        } else {
+            notifyDataSetChanged();
+        }
+    }
+
+    private List<T> filterObjects(List<T> objects, CharSequence constraint) {
+        String query = constraint.toString().toLowerCase(Locale.getDefault());
+        ArrayList<T> filtered = new ArrayList<>();
+        for (T object : objects) {
+            CharSequence text = getFilterText(object);
+            boolean matches = text != null
+                    ? text.toString().toLowerCase(Locale.getDefault()).contains(query)
+                    : isFiltered(constraint, object);
+            if (matches) {
+                filtered.add(object);
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * @return the index, or null if not all objects provide a filter text
+     */
+    private FilterIndex buildFilterIndex(List<T> objects) {
+        ArrayList<String> texts = new ArrayList<>(objects.size());
+        for (T object : objects) {
+            CharSequence text = getFilterText(object);
+            if (text == null) {
+                return null;
+            }
+            texts.add(text.toString().toLowerCase(Locale.getDefault()));
+        }
+        return new FilterIndex(texts);
+    }
+
     @Override
     public RecyclerView.ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
         switch (viewType) {
@@ -187,6 +351,9 @@ public abstract class RootAdapter<T, VH extends RecyclerView.ViewHolder>
                 return new HeaderViewHolder(mHeaderView);
             case VIEW_TYPE_FOOTER:
                 return new FooterViewHolder(mFooterView);
+            case VIEW_TYPE_PLACEHOLDER:
+                return new PlaceholderViewHolder(
+                        mInflater.inflate(R.layout.row_placeholder, parent, false));
             default:
                 RecyclerView.ViewHolder holder = onCreateViewHolder(mInflater, parent);
                 holder.itemView.setOnClickListener(this);
@@ -201,7 +368,8 @@ public abstract class RootAdapter<T, VH extends RecyclerView.ViewHolder>
             if (mFooterListener != null) {
                 mFooterListener.onScrolledToFooter();
             }
-        } else if (!(holder instanceof HeaderViewHolder)) {
+        } else if (!(holder instanceof HeaderViewHolder)
+                && !(holder instanceof PlaceholderViewHolder)) {
             onBindViewHolder((VH) holder, getItemFromAdapterPosition(position));
         }
     }
@@ -221,6 +389,33 @@ public abstract class RootAdapter<T, VH extends RecyclerView.ViewHolder>
         return true;
     }
 
+    /**
+     * Returns the text the filter is searched in, case-insensitively. Filtering
+     * by text uses an index and is much faster than {@link #isFiltered}, which
+     * is only used for objects without filter text.
+     * Called on a background thread.
+     */
+    protected CharSequence getFilterText(T object) {
+        return null;
+    }
+
+    /**
+     * Returns a value that identifies the object across reloads, e.g. its ID.
+     * If it returns null, {@link #setItems} rebinds all objects.
+     * Called on a background thread.
+     */
+    protected Object getItemKey(T object) {
+        return null;
+    }
+
+    /**
+     * Whether the views showing oldObject can stay unchanged when it's replaced
+     * by newObject, which has the same key. Called on a background thread.
+     */
+    protected boolean areContentsTheSame(T oldObject, T newObject) {
+        return false;
+    }
+
     @Override
     public Filter getFilter() {
         return mFilter;
@@ -230,6 +425,42 @@ public abstract class RootAdapter<T, VH extends RecyclerView.ViewHolder>
         return false;
     }
 
+    private class ItemDiffTask extends AsyncTask<Void, Void, ListDiff> {
+        private final List<T> mNewObjects;
+        private final List<T> mOldVisibleObjects;
+        private final CharSequence mConstraint;
+        private final int mStartModCount;
+        private List<T> mNewVisibleObjects;
+
+        public ItemDiffTask(List<T> objects) {
+            mNewObjects = new ArrayList<>(objects);
+            mOldVisibleObjects = new ArrayList<>(mObjects);
+            mConstraint = mFilterConstraint;
+            mStartModCount = mModCount;
+        }
+
+        @Override
+        protected ListDiff doInBackground(Void... params) {
+            mNewVisibleObjects = TextUtils.isEmpty(mConstraint)
+                    ? new ArrayList<>(mNewObjects) : filterObjects(mNewObjects, mConstraint);
+            return ListDiff.compute(RootAdapter.this, mOldVisibleObjects, mNewVisibleObjects);
+        }
+
+        @Override
+        protected void onPostExecute(ListDiff diff) {
+            if (mDiffTask != this) {
+                return;
+            }
+            mDiffTask = null;
+            if (mModCount != mStartModCount) {
+                // the diff doesn't match the current objects anymore
+                setItems(mNewObjects);
+            } else {
+                applyItems(mNewObjects, mNewVisibleObjects, diff);
+            }
+        }
+    }
+
     private static class HeaderViewHolder extends RecyclerView.ViewHolder {
         public HeaderViewHolder(View v) {
             super(v);
@@ -240,4 +471,10 @@ public abstract class RootAdapter<T, VH extends RecyclerView.ViewHolder>
             super(v);
         }
     }
+
+    private static class PlaceholderViewHolder extends RecyclerView.ViewHolder {
+        public PlaceholderViewHolder(View v) {
+            super(v);
+        }
+    }
 }
\ No newline at end of file
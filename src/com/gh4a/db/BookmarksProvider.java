@@ -42,7 +42,7 @@ public class BookmarksProvider extends ContentProvider {
 
     @Override
     public boolean onCreate() {
-        mDbHelper = new DbHelper(getContext());
+        mDbHelper = DbHelper.getInstance(getContext());
         return true;
     }
 
@@ -6,12 +6,35 @@ import android.database.sqlite.SQLiteOpenHelper;
 
 public class DbHelper extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "gh4adb.db";
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 2;
 
     static final String BOOKMARKS_TABLE = "bookmarks";
+    public static final String RESPONSE_CACHE_TABLE = "response_cache";
 
-    public DbHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    private static DbHelper sInstance;
+
+    private DbHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    /**
+     * Returns the helper shared by all users of the database within the
+     * process. Separate helpers would use separate connections, whose
+     * writes fail while the other one holds the database lock.
+     */
+    public static synchronized DbHelper getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new DbHelper(context.getApplicationContext(), DATABASE_NAME);
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns a helper for a new database that is only kept in memory, for
+     * data that must not end up in the real one, e.g. of benchmarks.
+     */
+    public static DbHelper createInMemory(Context context) {
+        return new DbHelper(context.getApplicationContext(), null);
     }
 
     @Override
@@ -22,9 +45,29 @@ public class DbHelper extends SQLiteOpenHelper {
                 + "type integer not null, "
                 + "uri text not null, "
                 + "extra_data text);");
+        createResponseCacheTable(db);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createResponseCacheTable(db);
+        }
+    }
+
+    // metadata of cached API responses, the bodies are kept in files (see ApiCache)
+    private void createResponseCacheTable(SQLiteDatabase db) {
+        db.execSQL("create table " + RESPONSE_CACHE_TABLE + " ("
+                + "_id integer primary key autoincrement, "
+                + "url text not null, "
+                + "account text not null, "
+                + "accept text not null, "
+                + "resource_type integer not null, "
+                + "fetched_at integer not null, "
+                + "etag text, "
+                + "last_modified text, "
+                + "links text, "
+                + "content_encoding text, "
+                + "unique (url, account, accept) on conflict replace);");
     }
 }
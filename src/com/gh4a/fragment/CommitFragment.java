@@ -33,6 +33,7 @@ import com.gh4a.utils.ApiHelpers;
 import com.gh4a.utils.FileUtils;
 import com.gh4a.utils.AvatarHandler;
 import com.gh4a.utils.IntentUtils;
+import com.gh4a.utils.RelativeTimeTicker;
 import com.gh4a.utils.StringUtils;
 import com.gh4a.utils.UiUtils;
 import com.gh4a.widget.StyleableTextView;
@@ -170,8 +171,7 @@ public class CommitFragment extends LoadingFragmentBase implements OnClickListen
         tvAuthor.setText(ApiHelpers.getAuthorName(app, mCommit));
 
         TextView tvTimestamp = (TextView) mContentView.findViewById(R.id.tv_timestamp);
-        tvTimestamp.setText(StringUtils.formatRelativeTime(
-                activity, commit.getAuthor().getDate(), true));
+        RelativeTimeTicker.setText(tvTimestamp, commit.getAuthor().getDate(), true);
 
         View committerContainer = mContentView.findViewById(R.id.committer);
 
@@ -34,7 +34,9 @@ import com.gh4a.activities.CompareActivity;
 import com.gh4a.activities.ReleaseInfoActivity;
 import com.gh4a.activities.WikiListActivity;
 import com.gh4a.adapter.EventAdapter;
+import com.gh4a.adapter.EventFormatter;
 import com.gh4a.adapter.RootAdapter;
+import com.gh4a.loader.PageIteratorLoader;
 import com.gh4a.utils.IntentUtils;
 import com.gh4a.utils.ToastUtils;
 import com.gh4a.utils.UiUtils;
@@ -72,9 +74,12 @@ import java.util.List;
 public abstract class EventListFragment extends PagedDataBaseFragment<Event> {
     private static final int MENU_DOWNLOAD_START = 100;
     private static final int MENU_DOWNLOAD_END = 199;
+    // event feeds can be scrolled through for a long time
+    private static final int RESIDENT_PAGE_MARGIN = 2;
 
     protected String mLogin;
     private EventAdapter mAdapter;
+    private EventFormatter mFormatter;
 
     private static final String[] REPO_EVENTS = new String[] {
         Event.TYPE_PUSH, Event.TYPE_ISSUES, Event.TYPE_WATCH, Event.TYPE_CREATE,
@@ -87,6 +92,7 @@ public abstract class EventListFragment extends PagedDataBaseFragment<Event> {
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         mLogin = getArguments().getString(Constants.User.LOGIN);
+        mFormatter = new EventFormatter(getActivity());
     }
 
     @Override
@@ -97,7 +103,7 @@ public abstract class EventListFragment extends PagedDataBaseFragment<Event> {
 
     @Override
     protected RootAdapter<Event, ? extends RecyclerView.ViewHolder> onCreateAdapter() {
-        mAdapter = new EventAdapter(getActivity());
+        mAdapter = new EventAdapter(getActivity(), mFormatter);
         return mAdapter;
     }
 
@@ -106,6 +112,21 @@ public abstract class EventListFragment extends PagedDataBaseFragment<Event> {
         return R.string.no_events_found;
     }
 
+    @Override
+    protected PageIteratorLoader.ItemPreparer<Event> onCreateItemPreparer() {
+        return mFormatter;
+    }
+
+    @Override
+    protected int getResidentPageMargin() {
+        return RESIDENT_PAGE_MARGIN;
+    }
+
+    @Override
+    protected Object getItemKey(Event event) {
+        return event.getId();
+    }
+
     @Override
     protected PageIterator<Event> onCreateIterator() {
         EventService eventService = (EventService)
@@ -282,7 +303,8 @@ public abstract class EventListFragment extends PagedDataBaseFragment<Event> {
         AdapterView.AdapterContextMenuInfo info = (AdapterView.AdapterContextMenuInfo) menuInfo;
         Event event = mAdapter.getItem(info.position);
 
-        if (EventAdapter.hasInvalidPayload(event)) {
+        // null for placeholders
+        if (event == null || EventAdapter.hasInvalidPayload(event)) {
             return;
         }
 
@@ -400,6 +422,9 @@ public abstract class EventListFragment extends PagedDataBaseFragment<Event> {
 
         int id = item.getItemId();
         Event event = mAdapter.getItemFromAdapterPosition(info.position);
+        if (event == null) {
+            return false;
+        }
 
         if (id >= MENU_DOWNLOAD_START && id <= MENU_DOWNLOAD_END) {
             final Download download;
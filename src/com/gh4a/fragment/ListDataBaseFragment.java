@@ -24,7 +24,6 @@ public abstract class ListDataBaseFragment<T> extends LoadingListFragmentBase im
 
         @Override
         protected void onResultReady(List<T> result) {
-            mAdapter.clear();
             onAddData(mAdapter, result);
             if (isResumed()) {
                 setContentShown(true);
@@ -46,10 +45,8 @@ public abstract class ListDataBaseFragment<T> extends LoadingListFragmentBase im
 
     @Override
     public void onRefresh() {
+        // keep the items, so the reloaded ones can be compared against them
         hideContentAndRestartLoaders(0);
-        if (mAdapter != null) {
-            mAdapter.clear();
-        }
     }
 
     @Override
@@ -58,8 +55,7 @@ public abstract class ListDataBaseFragment<T> extends LoadingListFragmentBase im
     }
 
     protected void onAddData(RootAdapter<T, ?> adapter, List<T> data) {
-        adapter.addAll(data);
-        adapter.notifyDataSetChanged();
+        adapter.setItems(data);
     }
 
     @Override
@@ -15,6 +15,7 @@ import com.gh4a.BaseActivity;
 import com.gh4a.R;
 import com.gh4a.adapter.RootAdapter;
 import com.gh4a.loader.LoaderCallbacks;
+import com.gh4a.utils.StartupTrace;
 import com.gh4a.utils.UiUtils;
 import com.gh4a.widget.DividerItemDecoration;
 import com.gh4a.widget.SwipeRefreshLayout;
@@ -67,6 +68,22 @@ public abstract class LoadingListFragmentBase extends ProgressFragment implement
         mProgress.setSmoothProgressDrawableColors(mProgressColors);
     }
 
+    @Override
+    public void setContentShown(boolean shown) {
+        super.setContentShown(shown);
+        if (shown) {
+            StartupTrace.onContentShown(getActivity());
+        }
+    }
+
+    @Override
+    public void setContentShownNoAnimation(boolean shown) {
+        super.setContentShownNoAnimation(shown);
+        if (shown) {
+            StartupTrace.onContentShown(getActivity());
+        }
+    }
+
     @Override
     public boolean canChildScrollUp() {
         return getView() != null && UiUtils.canViewScrollUp(mRecyclerView);
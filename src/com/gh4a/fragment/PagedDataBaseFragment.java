@@ -17,6 +17,7 @@ package com.gh4a.fragment;
 
 import android.os.Bundle;
 import android.support.v4.content.Loader;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -27,11 +28,11 @@ import com.gh4a.adapter.RootAdapter;
 import com.gh4a.loader.LoaderCallbacks;
 import com.gh4a.loader.LoaderResult;
 import com.gh4a.loader.PageIteratorLoader;
+import com.gh4a.loader.PageWindow;
 import com.gh4a.utils.UiUtils;
 
 import org.eclipse.egit.github.core.client.PageIterator;
 
-import java.util.ArrayList;
 import java.util.Collection;
 
 public abstract class PagedDataBaseFragment<T> extends LoadingListFragmentBase implements
@@ -39,27 +40,79 @@ public abstract class PagedDataBaseFragment<T> extends LoadingListFragmentBase i
     private RootAdapter<T, ? extends RecyclerView.ViewHolder> mAdapter;
     private PageIteratorWithSaveableState<T> mIterator;
     private boolean mIsLoadCompleted;
+    // the result the adapter contents are based on
+    private PageIteratorLoader<T>.LoadedPage<T> mLastResult;
+    private Bundle mLoaderState;
+    // only used in windowed mode, see getResidentPageMargin()
+    private PageWindow<T> mWindow;
     private View mLoadingView;
 
-    private static final String STATE_KEY_ITERATOR_STATE = "iterator_state";
+    private static final String STATE_KEY_LOADER_STATE = "loader_state";
+    private static final int DEFAULT_PREFETCH_DISTANCE = 10;
 
     private LoaderCallbacks<PageIteratorLoader<T>.LoadedPage<T>> mLoaderCallback =
             new LoaderCallbacks<PageIteratorLoader<T>.LoadedPage<T>>(this) {
         @Override
         protected Loader<LoaderResult<PageIteratorLoader<T>.LoadedPage<T>>> onCreateLoader() {
-            return new PageIteratorLoader<>(getActivity(), mIterator);
+            PageIteratorLoader<T> loader = new PageIteratorLoader<>(getActivity(), mIterator);
+            loader.setPrefetchEnabled(getPrefetchDistance() >= 0);
+            loader.setRetainPages(mWindow == null);
+            loader.setRestoreState(mLoaderState);
+            return loader;
         }
 
         @Override
         protected void onResultReady(PageIteratorLoader<T>.LoadedPage<T> result) {
-            fillData(result.results, result.hasMoreData);
+            fillData(result);
             mIsLoadCompleted = true;
             setContentShown(true);
-            mAdapter.notifyDataSetChanged();
             updateEmptyState();
         }
     };
 
+    private final PageWindow.Callback<T> mWindowCallback = new PageWindow.Callback<T>() {
+        @Override
+        public void onItemsRestored(int position, int count) {
+            if (mAdapter != null) {
+                mAdapter.notifyObjectsChanged(position, count);
+            }
+        }
+
+        @Override
+        public void onWindowInvalidated() {
+            onRefresh();
+        }
+
+        @Override
+        public Object getItemKey(T item) {
+            return PagedDataBaseFragment.this.getItemKey(item);
+        }
+    };
+
+    private final RecyclerView.OnScrollListener mScrollListener =
+            new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+            LinearLayoutManager lm = (LinearLayoutManager) recyclerView.getLayoutManager();
+            if (mWindow != null) {
+                // the window doesn't know about the header
+                int headerCount = mAdapter.getHeaderCount();
+                mWindow.setVisibleRange(lm.findFirstVisibleItemPosition() - headerCount,
+                        lm.findLastVisibleItemPosition() - headerCount);
+            }
+
+            int distance = getPrefetchDistance();
+            if (dy <= 0 || distance <= 0) {
+                return;
+            }
+            // the footer is the last item
+            int lastItem = mAdapter.getItemCount() - 1;
+            if (lm.findLastVisibleItemPosition() >= lastItem - distance) {
+                onScrolledToFooter();
+            }
+        }
+    };
+
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
@@ -68,18 +121,34 @@ public abstract class PagedDataBaseFragment<T> extends LoadingListFragmentBase i
         setContentShown(false);
 
         mIterator = (PageIteratorWithSaveableState<T>) onCreateIterator();
+        int margin = getResidentPageMargin();
+        if (margin >= 0 && mWindow == null) {
+            mWindow = new PageWindow<>(mIterator.getRequest(), mIterator.getClient(),
+                    margin, mWindowCallback);
+            if (mAdapter != null) {
+                mAdapter.setBackingList(mWindow);
+            }
+        }
         if (savedInstanceState != null) {
-            mIterator.restoreState(savedInstanceState.getBundle(STATE_KEY_ITERATOR_STATE));
+            // only used if the loader needs to be recreated, i.e. after process death
+            mLoaderState = savedInstanceState.getBundle(STATE_KEY_LOADER_STATE);
         }
 
-        getLoaderManager().initLoader(0, null, mLoaderCallback);
+        Loader<LoaderResult<PageIteratorLoader<T>.LoadedPage<T>>> loader =
+                getLoaderManager().initLoader(0, null, mLoaderCallback);
+        // an existing loader might still refer to the previous activity
+        PageIteratorLoader.ItemPreparer<T> preparer = onCreateItemPreparer();
+        ((PageIteratorLoader<T>) loader).setItemPreparer(preparer);
+        if (mWindow != null) {
+            mWindow.setItemPreparer(preparer);
+        }
     }
 
     @Override
     public void onSaveInstanceState(Bundle outState) {
         super.onSaveInstanceState(outState);
-        if (mIterator != null) {
-            outState.putBundle(STATE_KEY_ITERATOR_STATE, mIterator.saveState());
+        if (mLastResult != null) {
+            outState.putBundle(STATE_KEY_LOADER_STATE, mLastResult.saveState());
         }
     }
 
@@ -88,6 +157,10 @@ public abstract class PagedDataBaseFragment<T> extends LoadingListFragmentBase i
         if (mAdapter != null) {
             mAdapter.clear();
         }
+        if (mWindow != null) {
+            mWindow.clear();
+        }
+        mLastResult = null;
         mIsLoadCompleted = false;
         hideContentAndRestartLoaders(0);
     }
@@ -95,6 +168,12 @@ public abstract class PagedDataBaseFragment<T> extends LoadingListFragmentBase i
     @Override
     public void onViewCreated(View view, Bundle savedInstanceState) {
         mAdapter = onCreateAdapter();
+        if (mWindow != null) {
+            // the window keeps the items across view recreation
+            mAdapter.setBackingList(mWindow);
+        } else {
+            mLastResult = null;
+        }
 
         super.onViewCreated(view, savedInstanceState);
 
@@ -111,6 +190,7 @@ public abstract class PagedDataBaseFragment<T> extends LoadingListFragmentBase i
                     UiUtils.resolveDrawable(getActivity(), R.attr.listBackground));
         }
         recyclerView.setAdapter(mAdapter);
+        recyclerView.addOnScrollListener(mScrollListener);
         updateEmptyState();
     }
 
@@ -119,25 +199,30 @@ public abstract class PagedDataBaseFragment<T> extends LoadingListFragmentBase i
         return !mAdapter.isCardStyle();
     }
 
-    private void fillData(Collection<T> data, boolean hasMoreData) {
-        mLoadingView.setVisibility(hasMoreData ? View.VISIBLE : View.GONE);
-
-        if (mAdapter.getCount() > 0 && !data.isEmpty() && data.iterator().next() == mAdapter.getItem(0)) {
-            // there are common items, preserve them in order to keep the scroll position
-            ArrayList<T> newData = new ArrayList<>();
-            int index = 0, count = mAdapter.getCount();
-            for (T item : data) {
-                if (index < count && item == mAdapter.getItem(index++)) {
-                    // we already know about the item
-                    continue;
-                }
-                newData.add(item);
+    private void fillData(PageIteratorLoader<T>.LoadedPage<T> result) {
+        mLoadingView.setVisibility(result.hasMoreData ? View.VISIBLE : View.GONE);
+
+        if (result == mLastResult) {
+            return;
+        }
+        if (mWindow != null) {
+            if (result.isContinuationOf(mLastResult)) {
+                int position = mWindow.size();
+                mWindow.appendPage(result.newResults);
+                mAdapter.notifyObjectsInserted(position, result.newResults.size());
+            } else {
+                mWindow.clear();
+                mWindow.appendPage(result.results);
+                mAdapter.setBackingList(mWindow);
             }
-            onAddData(mAdapter, newData);
+        } else if (result.isContinuationOf(mLastResult)) {
+            // only add the new page, this keeps the existing views and the scroll position
+            onAddData(mAdapter, result.newResults);
         } else {
             mAdapter.clear();
-            onAddData(mAdapter, data);
+            onAddData(mAdapter, result.results);
         }
+        mLastResult = result;
     }
 
     protected void onAddData(RootAdapter<T, ? extends RecyclerView.ViewHolder> adapter, Collection<T> data) {
@@ -152,6 +237,43 @@ public abstract class PagedDataBaseFragment<T> extends LoadingListFragmentBase i
         }
     }
 
+    /**
+     * Number of items before the end of the list at which the next page is
+     * shown. Pages are fetched in the background as soon as the previous one
+     * was delivered, so usually it's available by then. 0 means the next page
+     * is shown once the footer becomes visible, a negative value additionally
+     * disables fetching pages in advance.
+     */
+    protected int getPrefetchDistance() {
+        return DEFAULT_PREFETCH_DISTANCE;
+    }
+
+    /**
+     * Enables windowed mode for very long lists if not negative. Only the
+     * pages showing the visible items and the given number of pages on each
+     * side of them are kept in memory, the others are shown as placeholders
+     * until they're restored. {@link #onAddData} isn't used in that mode.
+     */
+    protected int getResidentPageMargin() {
+        return -1;
+    }
+
+    /**
+     * Returns a value that identifies the item, e.g. its ID. In windowed
+     * mode, it's used to check whether restored pages are still the same.
+     */
+    protected Object getItemKey(T item) {
+        return null;
+    }
+
+    /**
+     * Returns the preparer for loaded items, if binding them to views
+     * involves work that can be done in the background.
+     */
+    protected PageIteratorLoader.ItemPreparer<T> onCreateItemPreparer() {
+        return null;
+    }
+
     protected abstract int getEmptyTextResId();
     protected abstract RootAdapter<T, ? extends RecyclerView.ViewHolder> onCreateAdapter();
     protected abstract PageIterator<T> onCreateIterator();
@@ -73,6 +73,7 @@ import com.gh4a.loader.LoaderResult;
 import com.gh4a.utils.ApiHelpers;
 import com.gh4a.utils.AvatarHandler;
 import com.gh4a.utils.IntentUtils;
+import com.gh4a.utils.RelativeTimeTicker;
 import com.gh4a.utils.StringUtils;
 import com.gh4a.utils.UiUtils;
 import com.gh4a.widget.IssueLabelSpan;
@@ -364,8 +365,7 @@ public class PullRequestFragment extends ListDataBaseFragment<IssueEventHolder>
         tvExtra.setText(mPullRequest.getUser().getLogin());
 
         TextView tvTimestamp = (TextView) mListHeaderView.findViewById(R.id.tv_timestamp);
-        tvTimestamp.setText(StringUtils.formatRelativeTime(getActivity(),
-                mPullRequest.getCreatedAt(), true));
+        RelativeTimeTicker.setText(tvTimestamp, mPullRequest.getCreatedAt(), true);
 
         String body = mPullRequest.getBodyHtml();
         TextView descriptionView = (TextView) mListHeaderView.findViewById(R.id.tv_desc);
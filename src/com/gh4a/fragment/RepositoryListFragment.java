@@ -15,6 +15,7 @@
  */
 package com.gh4a.fragment;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -81,14 +82,15 @@ public class RepositoryListFragment extends PagedDataBaseFragment<Repository> {
     protected void onAddData(RootAdapter<Repository, ? extends RecyclerView.ViewHolder> adapter,
             Collection<Repository> repositories) {
         if ("sources".equals(mRepoType) || "forks".equals(mRepoType)) {
+            ArrayList<Repository> filtered = new ArrayList<>();
             for (Repository repository : repositories) {
                 if ("sources".equals(mRepoType) && !repository.isFork()) {
-                    adapter.add(repository);
+                    filtered.add(repository);
                 } else if ("forks".equals(mRepoType) && repository.isFork()) {
-                    adapter.add(repository);
+                    filtered.add(repository);
                 }
             }
-            adapter.notifyDataSetChanged();
+            adapter.addAll(filtered);
         } else {
             adapter.addAll(repositories);
         }
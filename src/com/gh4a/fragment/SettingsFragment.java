@@ -3,6 +3,7 @@ package com.gh4a.fragment;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.os.Build;
@@ -11,19 +12,31 @@ import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatDialog;
 import android.support.v7.preference.Preference;
 import android.support.v7.preference.PreferenceFragmentCompat;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
 import android.widget.ListView;
 import android.widget.TextView;
+import android.widget.Toast;
 
+import com.gh4a.BackgroundTask;
 import com.gh4a.Constants;
 import com.gh4a.Gh4Application;
 import com.gh4a.R;
 import com.gh4a.activities.IssueEditActivity;
+import com.gh4a.loader.LoaderBenchmark;
+import com.gh4a.net.FixtureServer;
+import com.gh4a.net.FixtureStore;
+import com.gh4a.net.RequestMetrics;
 import com.gh4a.widget.IntegerListPreference;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
 public class SettingsFragment extends PreferenceFragmentCompat implements
         Preference.OnPreferenceClickListener, Preference.OnPreferenceChangeListener {
     public interface OnStateChangeListener {
@@ -40,12 +53,19 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
     private static final String KEY_LOGOUT = "logout";
     private static final String KEY_ABOUT = "about";
     private static final String KEY_OPEN_SOURCE_COMPONENTS = "open_source_components";
+    private static final String KEY_REQUEST_METRICS = "request_metrics";
+    private static final String KEY_LOADER_BENCHMARK = "loader_benchmark";
+
+    // latency of the 'slow network' benchmark, in ms
+    private static final long BENCHMARK_SLOW_LATENCY = 150;
 
     private OnStateChangeListener mListener;
     private IntegerListPreference mThemePref;
     private Preference mLogoutPref;
     private Preference mAboutPref;
     private Preference mOpenSourcePref;
+    private Preference mRequestMetricsPref;
+    private Preference mLoaderBenchmarkPref;
 
     @Override
     public void onAttach(Context context) {
@@ -79,6 +99,16 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
         mOpenSourcePref = findPreference(KEY_OPEN_SOURCE_COMPONENTS);
         mOpenSourcePref.setOnPreferenceClickListener(this);
 
+        mRequestMetricsPref = findPreference(KEY_REQUEST_METRICS);
+        mLoaderBenchmarkPref = findPreference(KEY_LOADER_BENCHMARK);
+        if ((getActivity().getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            mRequestMetricsPref.setOnPreferenceClickListener(this);
+            mLoaderBenchmarkPref.setOnPreferenceClickListener(this);
+        } else {
+            getPreferenceScreen().removePreference(mRequestMetricsPref);
+            getPreferenceScreen().removePreference(mLoaderBenchmarkPref);
+        }
+
         if (Build.VERSION.SDK_INT < Build.VERSION_CODES.HONEYCOMB) {
             getPreferenceScreen().removePreference(findPreference(KEY_GIF_LOADING));
         }
@@ -112,10 +142,31 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
             OpenSourceComponentListDialog d = new OpenSourceComponentListDialog(getActivity());
             d.show();
             return true;
+        } else if (pref == mRequestMetricsPref) {
+            RequestMetricsDialog d = new RequestMetricsDialog(getActivity());
+            d.show();
+            return true;
+        } else if (pref == mLoaderBenchmarkPref) {
+            showLoaderBenchmarkDialog();
+            return true;
         }
         return false;
     }
 
+    private void showLoaderBenchmarkDialog() {
+        new AlertDialog.Builder(getActivity())
+                .setTitle(R.string.loader_benchmark)
+                .setItems(R.array.loader_benchmark_modes, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        boolean record = which == 0;
+                        long latency = which == 2 ? BENCHMARK_SLOW_LATENCY : 0;
+                        new LoaderBenchmarkTask(getActivity(), record, latency).schedule();
+                    }
+                })
+                .show();
+    }
+
     private void updateLogoutPrefState() {
         Gh4Application app = Gh4Application.get();
         if (app.isAuthorized()) {
@@ -204,6 +255,114 @@ public class SettingsFragment extends PreferenceFragmentCompat implements
         }
     }
 
+    private static class LoaderBenchmarkTask extends BackgroundTask<String> {
+        private static final String RESULT_FILE_NAME = "loader-benchmark.txt";
+        private static final int ITERATIONS = 5;
+
+        private final boolean mRecord;
+        private final long mLatency;
+
+        public LoaderBenchmarkTask(Context context, boolean record, long latency) {
+            super(context);
+            mRecord = record;
+            mLatency = latency;
+        }
+
+        @Override
+        protected void onPreExecute() {
+            Toast.makeText(mContext, R.string.loader_benchmark_running, Toast.LENGTH_SHORT).show();
+        }
+
+        @Override
+        protected String run() throws Exception {
+            Gh4Application app = Gh4Application.get();
+            FixtureStore store = new FixtureStore(new File(getFilesDir(mContext), "fixtures"));
+            String owner = mContext.getString(R.string.my_username);
+            String login = app.isAuthorized() ? app.getAuthLogin() : owner;
+
+            LoaderBenchmark benchmark = new LoaderBenchmark(mContext, store);
+            benchmark.addDefaultCases(login, owner, mContext.getString(R.string.my_repo), 1);
+            String report = LoaderBenchmark.formatResults(mRecord
+                    ? benchmark.run(FixtureServer.MODE_RECORD, 0, 1, true)
+                    : benchmark.run(FixtureServer.MODE_REPLAY, mLatency, ITERATIONS, true));
+
+            Writer writer = new FileWriter(new File(getFilesDir(mContext), RESULT_FILE_NAME));
+            try {
+                writer.write(report);
+            } finally {
+                writer.close();
+            }
+            return report;
+        }
+
+        @Override
+        protected void onSuccess(String result) {
+            new AlertDialog.Builder(mContext)
+                    .setTitle(R.string.loader_benchmark)
+                    .setMessage(result)
+                    .setPositiveButton(R.string.ok, null)
+                    .show();
+        }
+
+        @Override
+        protected void onError(Exception e) {
+            Toast.makeText(mContext, e.getMessage(), Toast.LENGTH_LONG).show();
+        }
+    }
+
+    private static File getFilesDir(Context context) {
+        File dir = context.getExternalFilesDir(null);
+        return dir != null ? dir : context.getFilesDir();
+    }
+
+    private static class RequestMetricsDialog extends AlertDialog implements
+            DialogInterface.OnClickListener {
+        private static final String DUMP_FILE_NAME = "request-metrics.txt";
+
+        public RequestMetricsDialog(Context context) {
+            super(context);
+
+            setTitle(R.string.request_metrics);
+            setMessage(RequestMetrics.getInstance().dump());
+            setButton(DialogInterface.BUTTON_POSITIVE,
+                    context.getString(R.string.request_metrics_save), this);
+            setButton(DialogInterface.BUTTON_NEUTRAL,
+                    context.getString(R.string.request_metrics_reset), this);
+            setButton(DialogInterface.BUTTON_NEGATIVE, context.getString(R.string.ok),
+                    (DialogInterface.OnClickListener) null);
+        }
+
+        @Override
+        public void onClick(DialogInterface dialog, int which) {
+            Context context = getContext();
+            if (which == DialogInterface.BUTTON_NEUTRAL) {
+                RequestMetrics.getInstance().reset();
+                return;
+            }
+
+            File file = new File(getFilesDir(context), DUMP_FILE_NAME);
+            Writer writer = null;
+            try {
+                writer = new FileWriter(file);
+                RequestMetrics.getInstance().dump(writer);
+                Toast.makeText(context, context.getString(R.string.request_metrics_saved,
+                        file.getAbsolutePath()), Toast.LENGTH_LONG).show();
+            } catch (IOException e) {
+                Log.w(Constants.LOG_TAG, "Could not write request statistics", e);
+                Toast.makeText(context, R.string.request_metrics_save_failed,
+                        Toast.LENGTH_SHORT).show();
+            } finally {
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        // ignored
+                    }
+                }
+            }
+        }
+    }
+
     private static class OpenSourceComponentAdapter extends BaseAdapter {
         private static final String[][] COMPONENTS = new String[][] {
             { "android-gif-drawable", "https://github.com/koral--/android-gif-drawable" },
@@ -1,13 +1,21 @@
 package com.gh4a.loader;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v4.content.AsyncTaskLoader;
 import android.util.Log;
 
 import com.gh4a.Constants;
+import com.gh4a.net.CachePolicy;
+import com.gh4a.net.RequestScheduler;
 
 public abstract class BaseLoader<T> extends AsyncTaskLoader<LoaderResult<T>> {
     private T mPrefilledData;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean mHasLoaded;
+    // cached result posted for delivery while the network load is running
+    private volatile LoaderResult<T> mPendingCachedResult;
 
     public BaseLoader(Context context) {
         super(context);
@@ -22,15 +30,68 @@ public abstract class BaseLoader<T> extends AsyncTaskLoader<LoaderResult<T>> {
 
     @Override
     public LoaderResult<T> loadInBackground() {
+        // the initial load shows cached data first, refreshes always go to the server
+        boolean isRefresh = mHasLoaded;
+        mHasLoaded = true;
+
+        RequestScheduler.setThreadPriority(RequestScheduler.PRIORITY_FOREGROUND);
         try {
-            T data = doLoadInBackground();
-            return new LoaderResult<>(data);
-        } catch (Exception e) {
-            Log.e(Constants.LOG_TAG, e.getMessage(), e);
-            return new LoaderResult<>(e);
+            LoaderResult<T> cachedResult = null;
+            if (!isRefresh && supportsCachedLoad()) {
+                CachePolicy policy = CachePolicy.begin(CachePolicy.MODE_CACHE_ONLY);
+                try {
+                    cachedResult = new LoaderResult<>(doLoadInBackground());
+                    if (!policy.hasServedStaleResponse()) {
+                        // all responses were recent enough, no need to ask the server
+                        return cachedResult;
+                    }
+                    deliverCachedResult(cachedResult);
+                } catch (Exception e) {
+                    // not everything is cached, do a regular load
+                } finally {
+                    CachePolicy.end();
+                }
+            }
+
+            CachePolicy.begin(isRefresh
+                    ? CachePolicy.MODE_REVALIDATE : CachePolicy.MODE_DEFAULT);
+            try {
+                T data = doLoadInBackground();
+                return new LoaderResult<>(data);
+            } catch (Exception e) {
+                Log.e(Constants.LOG_TAG, e.getMessage(), e);
+                // keep showing the cached data instead of an error
+                return cachedResult != null ? cachedResult : new LoaderResult<T>(e);
+            } finally {
+                CachePolicy.end();
+                mPendingCachedResult = null;
+            }
+        } finally {
+            RequestScheduler.resetThreadPriority();
         }
     }
 
+    private void deliverCachedResult(final LoaderResult<T> result) {
+        mPendingCachedResult = result;
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                // don't overwrite the result of the network load if that was faster
+                if (mPendingCachedResult == result && isStarted() && !isAbandoned()) {
+                    deliverResult(result);
+                }
+            }
+        });
+    }
+
+    /**
+     * Whether the data can be loaded from the API cache only. Loaders that
+     * fetch data by other means than the API client should return false.
+     */
+    protected boolean supportsCachedLoad() {
+        return true;
+    }
+
     @Override
     protected void onStartLoading() {
         if (takeContentChanged()) {
@@ -6,11 +6,14 @@ import java.util.List;
 
 import org.eclipse.egit.github.core.RepositoryBranch;
 import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.client.IGitHubConstants;
 import org.eclipse.egit.github.core.service.RepositoryService;
 
 import android.content.Context;
 
 import com.gh4a.Gh4Application;
+import com.gh4a.net.ParallelPageFetcher;
+import com.google.gson.reflect.TypeToken;
 
 public class BranchListLoader extends BaseLoader<List<RepositoryBranch>> {
     private String mRepoOwner;
@@ -26,7 +29,10 @@ public class BranchListLoader extends BaseLoader<List<RepositoryBranch>> {
     public List<RepositoryBranch> doLoadInBackground() throws IOException {
         RepositoryService repoService = (RepositoryService)
                 Gh4Application.get().getService(Gh4Application.REPO_SERVICE);
-        List<RepositoryBranch> branches = repoService.getBranches(new RepositoryId(mRepoOwner, mRepoName));
+        List<RepositoryBranch> branches = ParallelPageFetcher.getAllForRepository(
+                repoService.getClient(), new RepositoryId(mRepoOwner, mRepoName),
+                IGitHubConstants.SEGMENT_BRANCHES,
+                new TypeToken<List<RepositoryBranch>>() {}.getType());
         ArrayList<RepositoryBranch> result = new ArrayList<>();
 
         if (branches != null) {
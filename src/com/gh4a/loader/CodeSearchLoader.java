@@ -4,7 +4,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.egit.github.core.CodeSearchResult;
-import org.eclipse.egit.github.core.client.GitHubClient;
 import org.eclipse.egit.github.core.service.RepositoryService;
 
 import android.content.Context;
@@ -23,15 +22,12 @@ public class CodeSearchLoader extends BaseLoader<List<CodeSearchResult>> {
 
     @Override
     public List<CodeSearchResult> doLoadInBackground() throws Exception {
-        Gh4Application app = (Gh4Application) getContext().getApplicationContext();
-        GitHubClient client = new DefaultClient("application/vnd.github.v3.text-match+json");
-        client.setOAuth2Token(app.getAuthToken());
-
         if (TextUtils.isEmpty(mQuery)) {
             return new ArrayList<>();
         }
 
-        RepositoryService repoService = new RepositoryService(client);
+        RepositoryService repoService = (RepositoryService) Gh4Application.get().getService(
+                Gh4Application.REPO_SERVICE, DefaultClient.HEADER_ACCEPT_TEXT_MATCH);
         return repoService.searchCode(mQuery);
     }
 }
@@ -2,8 +2,7 @@ package com.gh4a.loader;
 
 import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.net.URL;
-import java.net.URLConnection;
+import java.net.HttpURLConnection;
 import java.util.List;
 
 import javax.net.ssl.HostnameVerifier;
@@ -16,6 +15,7 @@ import android.content.Context;
 
 import com.gh4a.feeds.FeedHandler;
 import com.gh4a.holder.Feed;
+import com.gh4a.net.HttpTransport;
 
 public class FeedLoader extends BaseLoader<List<Feed>> {
     private String mUrl;
@@ -31,12 +31,18 @@ public class FeedLoader extends BaseLoader<List<Feed>> {
         mUrl = url;
     }
 
+    @Override
+    protected boolean supportsCachedLoad() {
+        // not fetched through the API client
+        return false;
+    }
+
     @Override
     public List<Feed> doLoadInBackground() throws Exception {
         BufferedInputStream bis = null;
+        HttpURLConnection request = null;
         try {
-            URL url = new URL(mUrl);
-            URLConnection request = url.openConnection();
+            request = HttpTransport.open(mUrl);
 
             if (request instanceof HttpsURLConnection) {
                 ((HttpsURLConnection) request).setHostnameVerifier(DO_NOT_VERIFY);
@@ -57,6 +63,9 @@ public class FeedLoader extends BaseLoader<List<Feed>> {
                     // ignored
                 }
             }
+            if (request != null) {
+                request.disconnect();
+            }
         }
     }
 }
\ No newline at end of file
@@ -15,6 +15,7 @@ import org.eclipse.egit.github.core.service.IssueService;
 import android.content.Context;
 
 import com.gh4a.Gh4Application;
+import com.gh4a.net.RequestBatch;
 
 public class IssueCommentListLoader extends BaseLoader<List<IssueEventHolder>> {
     private String mRepoOwner;
@@ -45,24 +46,50 @@ public class IssueCommentListLoader extends BaseLoader<List<IssueEventHolder>> {
 
     @Override
     protected List<IssueEventHolder> doLoadInBackground() throws IOException {
-        IssueService issueService = (IssueService)
-                Gh4Application.get().getService(Gh4Application.ISSUE_SERVICE);
-        List<Comment> comments = issueService.getComments(
-                new RepositoryId(mRepoOwner, mRepoName), mIssueNumber);
-        List<IssueEvent> events = issueService.getIssueEvents(mRepoOwner, mRepoName, mIssueNumber);
-        List<IssueEventHolder> result = new ArrayList<>();
+        // the different parts of the timeline don't depend on each other,
+        // so they're requested at the same time
+        RequestBatch<List<IssueEventHolder>> batch = new RequestBatch<>();
+        addRequests(batch);
 
-        for (Comment comment : comments) {
-            result.add(new IssueEventHolder(comment));
-        }
-        for (IssueEvent event : events) {
-            if (INTERESTING_EVENTS.contains(event.getEvent())) {
-                result.add(new IssueEventHolder(event));
-            }
+        List<IssueEventHolder> result = new ArrayList<>();
+        for (List<IssueEventHolder> items : batch.getResults()) {
+            result.addAll(items);
         }
 
         Collections.sort(result, SORTER);
 
         return result;
     }
+
+    protected void addRequests(RequestBatch<List<IssueEventHolder>> batch) {
+        final IssueService issueService = (IssueService)
+                Gh4Application.get().getService(Gh4Application.ISSUE_SERVICE);
+
+        batch.submit(new RequestBatch.Request<List<IssueEventHolder>>() {
+            @Override
+            public List<IssueEventHolder> execute() throws IOException {
+                List<Comment> comments = issueService.getComments(
+                        new RepositoryId(mRepoOwner, mRepoName), mIssueNumber);
+                List<IssueEventHolder> result = new ArrayList<>();
+                for (Comment comment : comments) {
+                    result.add(new IssueEventHolder(comment));
+                }
+                return result;
+            }
+        });
+        batch.submit(new RequestBatch.Request<List<IssueEventHolder>>() {
+            @Override
+            public List<IssueEventHolder> execute() throws IOException {
+                List<IssueEvent> events =
+                        issueService.getIssueEvents(mRepoOwner, mRepoName, mIssueNumber);
+                List<IssueEventHolder> result = new ArrayList<>();
+                for (IssueEvent event : events) {
+                    if (INTERESTING_EVENTS.contains(event.getEvent())) {
+                        result.add(new IssueEventHolder(event));
+                    }
+                }
+                return result;
+            }
+        });
+    }
 }
@@ -4,11 +4,15 @@ import java.io.IOException;
 import java.util.List;
 
 import org.eclipse.egit.github.core.Label;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.client.IGitHubConstants;
 import org.eclipse.egit.github.core.service.LabelService;
 
 import android.content.Context;
 
 import com.gh4a.Gh4Application;
+import com.gh4a.net.ParallelPageFetcher;
+import com.google.gson.reflect.TypeToken;
 
 public class LabelListLoader extends BaseLoader<List<Label>> {
 
@@ -25,6 +29,8 @@ public class LabelListLoader extends BaseLoader<List<Label>> {
     public List<Label> doLoadInBackground() throws IOException {
         LabelService labelService = (LabelService)
                 Gh4Application.get().getService(Gh4Application.LABEL_SERVICE);
-        return labelService.getLabels(mRepoOwner, mRepoName);
+        return ParallelPageFetcher.getAllForRepository(labelService.getClient(),
+                new RepositoryId(mRepoOwner, mRepoName), IGitHubConstants.SEGMENT_LABELS,
+                new TypeToken<List<Label>>() {}.getType());
     }
 }
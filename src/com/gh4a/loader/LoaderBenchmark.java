@@ -0,0 +1,255 @@
+package com.gh4a.loader;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.support.v4.content.AsyncTaskLoader;
+
+import com.gh4a.Gh4Application;
+import com.gh4a.db.DbHelper;
+import com.gh4a.net.ApiCache;
+import com.gh4a.net.FixtureServer;
+import com.gh4a.net.FixtureStore;
+import com.gh4a.net.RequestScheduler;
+
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.service.CommitService;
+import org.eclipse.egit.github.core.service.EventService;
+import org.eclipse.egit.github.core.service.IssueService;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Times loaders end to end against a {@link FixtureServer}. In record mode
+ * the responses of the real API are stored as fixtures, in replay mode the
+ * loaders run against those fixtures, optionally with injected latency.
+ * Must not be run on the main thread.
+ */
+public class LoaderBenchmark {
+    private static final int MAX_PAGES = 10;
+    private static final long API_CACHE_SIZE = 10 * 1024 * 1024;
+
+    public interface LoaderFactory {
+        AsyncTaskLoader<? extends LoaderResult<?>> create(Context context);
+    }
+
+    public static class Result {
+        public final String name;
+        public final long latency;
+        // duration of each iteration in ms
+        public final ArrayList<Long> timings = new ArrayList<>();
+        public int pages;
+        public Exception error;
+
+        private Result(String name, long latency) {
+            this.name = name;
+            this.latency = latency;
+        }
+
+        public long getMedian() {
+            if (timings.isEmpty()) {
+                return 0;
+            }
+            ArrayList<Long> sorted = new ArrayList<>(timings);
+            Collections.sort(sorted);
+            return sorted.get(sorted.size() / 2);
+        }
+
+        public long getMax() {
+            return timings.isEmpty() ? 0 : Collections.max(timings);
+        }
+    }
+
+    private final Context mContext;
+    private final FixtureStore mStore;
+    private final ArrayList<String> mNames = new ArrayList<>();
+    private final ArrayList<LoaderFactory> mFactories = new ArrayList<>();
+
+    public LoaderBenchmark(Context context, FixtureStore store) {
+        mContext = context.getApplicationContext();
+        mStore = store;
+    }
+
+    public void addCase(String name, LoaderFactory factory) {
+        mNames.add(name);
+        mFactories.add(factory);
+    }
+
+    /**
+     * Adds the loaders behind the most frequently used screens.
+     */
+    public void addDefaultCases(final String login, final String repoOwner,
+            final String repoName, final int issueNumber) {
+        addCase("UserLoader", new LoaderFactory() {
+            @Override
+            public AsyncTaskLoader<? extends LoaderResult<?>> create(Context context) {
+                return new UserLoader(context, login);
+            }
+        });
+        addCase("RepositoryLoader", new LoaderFactory() {
+            @Override
+            public AsyncTaskLoader<? extends LoaderResult<?>> create(Context context) {
+                return new RepositoryLoader(context, repoOwner, repoName);
+            }
+        });
+        addCase("ReadmeLoader", new LoaderFactory() {
+            @Override
+            public AsyncTaskLoader<? extends LoaderResult<?>> create(Context context) {
+                return new ReadmeLoader(context, repoOwner, repoName, null);
+            }
+        });
+        addCase("IssueLoader", new LoaderFactory() {
+            @Override
+            public AsyncTaskLoader<? extends LoaderResult<?>> create(Context context) {
+                return new IssueLoader(context, repoOwner, repoName, issueNumber);
+            }
+        });
+        addCase("IssueCommentListLoader", new LoaderFactory() {
+            @Override
+            public AsyncTaskLoader<? extends LoaderResult<?>> create(Context context) {
+                return new IssueCommentListLoader(context, repoOwner, repoName, issueNumber);
+            }
+        });
+        addCase("LabelListLoader", new LoaderFactory() {
+            @Override
+            public AsyncTaskLoader<? extends LoaderResult<?>> create(Context context) {
+                return new LabelListLoader(context, repoOwner, repoName);
+            }
+        });
+        addCase("MilestoneListLoader", new LoaderFactory() {
+            @Override
+            public AsyncTaskLoader<? extends LoaderResult<?>> create(Context context) {
+                return new MilestoneListLoader(context, repoOwner, repoName);
+            }
+        });
+        addCase("CollaboratorListLoader", new LoaderFactory() {
+            @Override
+            public AsyncTaskLoader<? extends LoaderResult<?>> create(Context context) {
+                return new CollaboratorListLoader(context, repoOwner, repoName);
+            }
+        });
+        addCase("ReceivedEvents (paged)", new LoaderFactory() {
+            @Override
+            public AsyncTaskLoader<? extends LoaderResult<?>> create(Context context) {
+                EventService service = (EventService)
+                        Gh4Application.get().getService(Gh4Application.EVENT_SERVICE);
+                return new PageIteratorLoader<>(context,
+                        service.pageUserReceivedEvents(login));
+            }
+        });
+        addCase("Issues (paged)", new LoaderFactory() {
+            @Override
+            public AsyncTaskLoader<? extends LoaderResult<?>> create(Context context) {
+                IssueService service = (IssueService)
+                        Gh4Application.get().getService(Gh4Application.ISSUE_SERVICE);
+                HashMap<String, String> filter = new HashMap<>();
+                filter.put("state", "open");
+                return new PageIteratorLoader<>(context,
+                        service.pageIssues(new RepositoryId(repoOwner, repoName), filter));
+            }
+        });
+        addCase("Commits (paged)", new LoaderFactory() {
+            @Override
+            public AsyncTaskLoader<? extends LoaderResult<?>> create(Context context) {
+                CommitService service = (CommitService)
+                        Gh4Application.get().getService(Gh4Application.COMMIT_SERVICE);
+                return new PageIteratorLoader<>(context,
+                        service.pageCommits(new RepositoryId(repoOwner, repoName), null, null));
+            }
+        });
+    }
+
+    /**
+     * Runs all cases.
+     *
+     * @param mode       {@link FixtureServer#MODE_RECORD} or {@link FixtureServer#MODE_REPLAY}
+     * @param latency    latency in ms the server adds to every response
+     * @param iterations number of runs per case
+     * @param coldCache  whether to clear the API cache before each run, so that
+     *                   no conditional requests are made. The runs use a cache of
+     *                   their own, the one of the app isn't touched.
+     */
+    public List<Result> run(int mode, long latency, int iterations, boolean coldCache)
+            throws IOException {
+        FixtureServer server = new FixtureServer(mStore, mode);
+        server.setLatency(latency);
+        server.start();
+
+        Gh4Application app = Gh4Application.get();
+        // the fixture responses carry rate limit headers of their own
+        RequestScheduler.Budget budget = RequestScheduler.getInstance().getBudget();
+        DbHelper dbHelper = DbHelper.createInMemory(app);
+        ApiCache cache = new ApiCache(dbHelper,
+                new File(app.getCacheDir(), "benchmark-api"), API_CACHE_SIZE);
+        ArrayList<Result> results = new ArrayList<>();
+        try {
+            app.setApiEndpoint(new URL("http", server.getHostname(), server.getPort(), ""));
+            app.setApiCacheOverride(cache);
+            for (int i = 0; i < mFactories.size(); i++) {
+                Result result = new Result(mNames.get(i), latency);
+                for (int iteration = 0; iteration < iterations && result.error == null;
+                        iteration++) {
+                    if (coldCache) {
+                        cache.clear();
+                    }
+                    runCase(mFactories.get(i), result);
+                }
+                results.add(result);
+            }
+        } finally {
+            app.setApiCacheOverride(null);
+            app.setApiEndpoint(null);
+            RequestScheduler.getInstance().updateBudget(budget.limit,
+                    budget.remaining, budget.resetTime);
+            server.stop();
+            cache.clear();
+            dbHelper.close();
+        }
+        return results;
+    }
+
+    private void runCase(LoaderFactory factory, Result result) {
+        AsyncTaskLoader<? extends LoaderResult<?>> loader = factory.create(mContext);
+        long start = SystemClock.elapsedRealtime();
+        int pages = 0;
+
+        while (pages < MAX_PAGES) {
+            LoaderResult<?> loaderResult = loader.loadInBackground();
+            pages++;
+            if (!loaderResult.isSuccess()) {
+                result.error = loaderResult.getException();
+                return;
+            }
+            Object data = loaderResult.getData();
+            if (!(data instanceof PageIteratorLoader.LoadedPage)
+                    || !((PageIteratorLoader.LoadedPage) data).hasMoreData) {
+                break;
+            }
+        }
+
+        result.timings.add(SystemClock.elapsedRealtime() - start);
+        result.pages = pages;
+    }
+
+    public static String formatResults(List<Result> results) {
+        StringBuilder sb = new StringBuilder();
+        for (Result result : results) {
+            sb.append(result.name).append(" (latency ").append(result.latency).append(" ms): ");
+            if (result.error != null) {
+                sb.append("failed: ").append(result.error.getMessage());
+            } else {
+                sb.append(String.format(Locale.US, "median %d ms, max %d ms, %d run(s), %d page(s)",
+                        result.getMedian(), result.getMax(), result.timings.size(),
+                        result.pages));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -1,64 +1,458 @@
 package com.gh4a.loader;
 
+import java.io.IOException;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.egit.github.core.client.PageIterator;
 
 import android.content.Context;
+import android.os.Bundle;
 import android.support.v4.content.AsyncTaskLoader;
 import android.util.Log;
 
 import com.gh4a.Constants;
+import com.gh4a.Gh4Application;
+import com.gh4a.PageIteratorWithSaveableState;
+import com.gh4a.PageIteratorWithSaveableState.PendingPage;
+import com.gh4a.net.CachePolicy;
+import com.gh4a.net.RequestScheduler;
 
 public class PageIteratorLoader<T> extends AsyncTaskLoader<LoaderResult<PageIteratorLoader<T>.LoadedPage<T>>> {
-    private PageIterator<T> mPageIterator;
-    private ArrayList<T> mPreviouslyLoadedData;
+    // fetches the page following the one just delivered, so that it's
+    // already available when the user scrolls there
+    private static final ExecutorService sPrefetchExecutor = Executors.newFixedThreadPool(2);
+
+    private static final String STATE_KEY_ITERATOR_STATE = "iterator_state";
+    private static final String STATE_KEY_PAGE_COUNT = "page_count";
+    private static final String STATE_KEY_SNAPSHOT_TIME = "snapshot_time";
+
+    private static final AtomicInteger sNextListId = new AtomicInteger();
+
+    /**
+     * Does work for newly loaded items that would otherwise be done when
+     * binding them, e.g. formatting. Called on a background thread.
+     */
+    public interface ItemPreparer<T> {
+        void prepareItems(List<T> items);
+    }
+
+    private final PageIterator<T> mPageIterator;
+    private PageStore<T> mPages;
+    // changes on every reset, results with the same ID continue each other
+    private int mListId;
+    private boolean mRetainPages = true;
+    private boolean mHasLoaded;
+    // set after a refresh until the next successful load, so cached pages
+    // are revalidated with the server
+    private volatile boolean mRevalidate;
+    private boolean mPrefetchEnabled = true;
+    private volatile ItemPreparer<T> mItemPreparer;
+    // the iterator is only moved by the loading thread, a prefetch only
+    // executes the request for the page it reserved
+    private volatile boolean mResetPending;
+    private volatile Prefetch<T> mPrefetch;
+    // number of pages loaded since the last reset
+    private int mPageCount;
+    // state of a list to restore instead of loading the first page
+    private Bundle mRestoreState;
+    // set after restoring a list, it's then reloaded as a whole
+    private boolean mReloadRestoredPages;
+    private int mPagesToReload;
+
+    private static class Prefetch<T> {
+        final RequestScheduler.Priority priority =
+                new RequestScheduler.Priority(RequestScheduler.PRIORITY_PREFETCH);
+        // set by whoever runs first, the prefetch or a load that can't wait for it
+        final AtomicBoolean started = new AtomicBoolean();
+        Future<PendingPage<T>> future;
+    }
 
     public class LoadedPage<T> {
-        public final Collection<T> results;
+        // all items loaded so far, or the same as newResults if pages aren't retained
+        public final List<T> results;
+        // the items added since the previous result
+        public final List<T> newResults;
         public final boolean hasMoreData;
-        private LoadedPage(Collection<T> r, boolean hmd) {
-            results = r;
+        private final int mListId;
+        private final int mItemCount;
+        // iterator position after the last page of results
+        private final Bundle mIteratorState;
+        private final int mPageCount;
+        private Bundle mSavedState;
+
+        private LoadedPage(PageStore<T> store, List<T> nr, boolean hmd, int listId,
+                Bundle iteratorState, int pageCount) {
+            results = store.snapshot();
+            newResults = nr;
             hasMoreData = hmd;
+            mListId = listId;
+            mItemCount = store.size();
+            mIteratorState = iteratorState;
+            mPageCount = pageCount;
+        }
+
+        /**
+         * Writes the results to disk and returns the state to pass to
+         * {@link #setRestoreState} to show them again after the process
+         * was killed. Returns null if this isn't possible for the list.
+         */
+        public Bundle saveState() {
+            if (mSavedState == null && mIteratorState != null && mRetainPages
+                    && !results.isEmpty()) {
+                Type listType = getListType();
+                if (listType != null) {
+                    long time = System.currentTimeMillis();
+                    Gh4Application.get().getPageSnapshotCache().put(
+                            PageSnapshotCache.makeKey(mPageIterator.getRequest()),
+                            time, results, listType);
+                    mSavedState = new Bundle();
+                    mSavedState.putBundle(STATE_KEY_ITERATOR_STATE, mIteratorState);
+                    mSavedState.putInt(STATE_KEY_PAGE_COUNT, mPageCount);
+                    mSavedState.putLong(STATE_KEY_SNAPSHOT_TIME, time);
+                }
+            }
+            return mSavedState;
+        }
+
+        /**
+         * Whether this result only adds items to the given previous one,
+         * that is, whether it's sufficient to add {@link #newResults}.
+         */
+        public boolean isContinuationOf(LoadedPage<T> previous) {
+            return previous != null && previous.mListId == mListId
+                    && previous.mItemCount + newResults.size() == mItemCount;
         }
     }
 
     public PageIteratorLoader(Context context, PageIterator<T> pageIterator) {
         super(context);
         mPageIterator = pageIterator;
-        mPreviouslyLoadedData = new ArrayList<>();
+        mPages = new PageStore<>();
         onContentChanged();
     }
 
+    public void setPrefetchEnabled(boolean enabled) {
+        mPrefetchEnabled = enabled;
+    }
+
+    /**
+     * Sets the preparer for the items of pages loaded from now on. As the
+     * loader survives configuration changes, it needs to be set again by
+     * the new owner if it refers to the activity.
+     */
+    public void setItemPreparer(ItemPreparer<T> preparer) {
+        mItemPreparer = preparer;
+    }
+
+    /**
+     * If disabled, the loader doesn't keep the pages it delivered, and each
+     * result only contains the items of its own pages. That's for callers
+     * keeping the items themselves, e.g. in a {@link PageWindow}.
+     */
+    public void setRetainPages(boolean retain) {
+        mRetainPages = retain;
+    }
+
+    /**
+     * Makes the first load show the list saved via {@link LoadedPage#saveState},
+     * if its snapshot is still available. Afterwards all of its pages are
+     * reloaded, revalidating them with the server.
+     */
+    public void setRestoreState(Bundle state) {
+        mRestoreState = state;
+    }
+
     @Override
     public void onContentChanged() {
         super.onContentChanged();
-        mPageIterator.reset();
-        mPreviouslyLoadedData.clear();
+        mRevalidate = mHasLoaded;
+        requestReset();
     }
 
     @Override
     protected void onReset() {
         super.onReset();
-        mPageIterator.reset();
-        mPreviouslyLoadedData.clear();
+        requestReset();
+    }
+
+    private void requestReset() {
+        mResetPending = true;
+        Prefetch<T> prefetch = mPrefetch;
+        mPrefetch = null;
+        if (prefetch != null) {
+            prefetch.future.cancel(true);
+        }
     }
 
     @Override
     public LoaderResult<LoadedPage<T>> loadInBackground() {
-        if (mPageIterator.hasNext()) {
+        boolean hasMoreData;
+        Bundle iteratorState;
+        synchronized (mPageIterator) {
+            if (mResetPending) {
+                mResetPending = false;
+                mPageIterator.reset();
+                mPages = new PageStore<>();
+                mPageCount = 0;
+                mListId = sNextListId.incrementAndGet();
+            }
+        }
+
+        if (mRestoreState != null) {
+            Bundle state = mRestoreState;
+            mRestoreState = null;
+            LoadedPage<T> restored = restoreSnapshot(state);
+            if (restored != null) {
+                return new LoaderResult<>(restored);
+            }
+        }
+
+        boolean revalidate = mRevalidate;
+        Collection<T> newData = takePrefetchedPage();
+        if (newData != null) {
+            mPageCount++;
+        } else if (hasNextPage()) {
+            RequestScheduler.setThreadPriority(getLoadPriority());
             try {
-                Collection<T> newData = mPageIterator.next();
-                mPreviouslyLoadedData = new ArrayList<>(mPreviouslyLoadedData);
-                mPreviouslyLoadedData.addAll(newData);
+                newData = fetchNextPage(revalidate);
+                int pageCount = 1;
+                if (mPagesToReload > 1 && mPageCount == 0) {
+                    // replace a restored list by the current version of all of its pages
+                    ArrayList<T> reloaded = new ArrayList<>(newData);
+                    while (pageCount < mPagesToReload && hasNextPage()) {
+                        reloaded.addAll(fetchNextPage(revalidate));
+                        pageCount++;
+                    }
+                    newData = reloaded;
+                }
+                mPageCount += pageCount;
+                mPagesToReload = 0;
             } catch (Exception e) {
                 Log.e(Constants.LOG_TAG, e.getMessage(), e);
                 return new LoaderResult<>(e);
+            } finally {
+                RequestScheduler.resetThreadPriority();
+            }
+        }
+
+        if (revalidate && !mResetPending) {
+            // the refresh is done, further pages may come from the cache again
+            mRevalidate = false;
+        }
+
+        List<T> addedData = newData != null
+                ? mPages.append(newData) : Collections.<T>emptyList();
+        prepareItems(addedData);
+
+        synchronized (mPageIterator) {
+            hasMoreData = mPageIterator.hasNext();
+            iteratorState = saveIteratorState();
+        }
+        if (hasMoreData && mPrefetchEnabled && !isAbandoned() && !mResetPending
+                && mPageIterator instanceof PageIteratorWithSaveableState) {
+            startPrefetch();
+        }
+
+        LoadedPage<T> result = new LoadedPage<>(mPages, addedData, hasMoreData,
+                mListId, iteratorState, mPageCount);
+        if (!mRetainPages) {
+            // continue counting from where this result ended
+            mPages = new PageStore<>(mPages.size());
+        }
+        return new LoaderResult<>(result);
+    }
+
+    @Override
+    public void deliverResult(LoaderResult<LoadedPage<T>> result) {
+        super.deliverResult(result);
+        if (mReloadRestoredPages) {
+            mReloadRestoredPages = false;
+            onContentChanged();
+        }
+    }
+
+    private LoadedPage<T> restoreSnapshot(Bundle state) {
+        Bundle iteratorState = state.getBundle(STATE_KEY_ITERATOR_STATE);
+        Type listType = getListType();
+        if (iteratorState == null || listType == null
+                || !(mPageIterator instanceof PageIteratorWithSaveableState)) {
+            return null;
+        }
+        List<T> items = Gh4Application.get().getPageSnapshotCache().get(
+                PageSnapshotCache.makeKey(mPageIterator.getRequest()),
+                state.getLong(STATE_KEY_SNAPSHOT_TIME), listType);
+        if (items == null) {
+            return null;
+        }
+
+        boolean hasMoreData;
+        synchronized (mPageIterator) {
+            ((PageIteratorWithSaveableState<T>) mPageIterator).restoreState(iteratorState);
+            hasMoreData = mPageIterator.hasNext();
+        }
+        mPageCount = state.getInt(STATE_KEY_PAGE_COUNT);
+        mPagesToReload = mPageCount;
+        mReloadRestoredPages = true;
+        // makes the reload revalidate the pages
+        mHasLoaded = true;
+        List<T> addedData = mPages.append(items);
+        prepareItems(addedData);
+        return new LoadedPage<>(mPages, addedData, hasMoreData,
+                mListId, iteratorState, mPageCount);
+    }
+
+    private void prepareItems(List<T> items) {
+        ItemPreparer<T> preparer = mItemPreparer;
+        if (preparer != null && !items.isEmpty()) {
+            preparer.prepareItems(items);
+        }
+    }
+
+    private Bundle saveIteratorState() {
+        if (mPageIterator instanceof PageIteratorWithSaveableState) {
+            return ((PageIteratorWithSaveableState<T>) mPageIterator).saveState();
+        }
+        return null;
+    }
+
+    private Type getListType() {
+        return PageSnapshotCache.getListType(mPageIterator.getRequest());
+    }
+
+    private boolean hasNextPage() {
+        synchronized (mPageIterator) {
+            return mPageIterator.hasNext();
+        }
+    }
+
+    private Collection<T> fetchNextPage(boolean revalidate) throws IOException {
+        mHasLoaded = true;
+        if (!(mPageIterator instanceof PageIteratorWithSaveableState)) {
+            synchronized (mPageIterator) {
+                CachePolicy.begin(revalidate
+                        ? CachePolicy.MODE_REVALIDATE : CachePolicy.MODE_DEFAULT);
+                try {
+                    return mPageIterator.next();
+                } finally {
+                    CachePolicy.end();
+                }
             }
         }
 
-        return new LoaderResult<>(new LoadedPage<>(mPreviouslyLoadedData, mPageIterator.hasNext()));
+        PageIteratorWithSaveableState<T> iterator = (PageIteratorWithSaveableState<T>) mPageIterator;
+        PendingPage<T> page;
+        synchronized (mPageIterator) {
+            page = iterator.reserveNext();
+        }
+        if (page == null) {
+            return Collections.emptyList();
+        }
+        executePage(page, revalidate);
+        Collection<T> items;
+        synchronized (mPageIterator) {
+            items = iterator.complete(page);
+        }
+        // only this thread moves the iterator, so it can't have changed
+        return items != null ? items : Collections.<T>emptyList();
+    }
+
+    private void executePage(PendingPage<T> page, boolean revalidate) throws IOException {
+        CachePolicy.begin(revalidate ? CachePolicy.MODE_REVALIDATE : CachePolicy.MODE_DEFAULT);
+        try {
+            page.execute(((PageIteratorWithSaveableState<T>) mPageIterator).getClient());
+        } finally {
+            CachePolicy.end();
+        }
+    }
+
+    private int getLoadPriority() {
+        // the first page is what the user is waiting for, further pages
+        // are requested while scrolling
+        return mPageCount == 0
+                ? RequestScheduler.PRIORITY_FOREGROUND : RequestScheduler.PRIORITY_PAGINATION;
+    }
+
+    private void startPrefetch() {
+        final PendingPage<T> page;
+        synchronized (mPageIterator) {
+            page = ((PageIteratorWithSaveableState<T>) mPageIterator).reserveNext();
+        }
+        if (page == null) {
+            return;
+        }
+        final boolean revalidate = mRevalidate;
+        final Prefetch<T> prefetch = new Prefetch<>();
+        prefetch.future = sPrefetchExecutor.submit(new Callable<PendingPage<T>>() {
+            @Override
+            public PendingPage<T> call() throws Exception {
+                // content changed while we were queued, the page isn't needed
+                // anymore, or the loader didn't want to wait for us
+                if (mResetPending || !prefetch.started.compareAndSet(false, true)) {
+                    return null;
+                }
+                RequestScheduler.setThreadPriority(prefetch.priority);
+                try {
+                    executePage(page, revalidate);
+                    return page;
+                } finally {
+                    RequestScheduler.resetThreadPriority();
+                }
+            }
+        });
+        mPrefetch = prefetch;
+    }
+
+    /**
+     * Returns the page of the prefetch, or null if there was none or it
+     * failed. A prefetch that already started is waited for, with its
+     * requests moved up to the priority of this load, as the user waits
+     * for the page now. One that is still queued on the executor is
+     * dropped, the caller is quicker requesting the page itself. As the
+     * iterator only advances when a page is completed, it's unchanged if
+     * null is returned.
+     */
+    private Collection<T> takePrefetchedPage() {
+        Prefetch<T> prefetch = mPrefetch;
+        mPrefetch = null;
+        if (prefetch == null) {
+            return null;
+        }
+        if (prefetch.started.compareAndSet(false, true)) {
+            prefetch.future.cancel(false);
+            return null;
+        }
+        RequestScheduler.getInstance().raisePriority(prefetch.priority, getLoadPriority());
+
+        PendingPage<T> page;
+        try {
+            page = prefetch.future.get();
+        } catch (CancellationException e) {
+            return null;
+        } catch (ExecutionException e) {
+            Log.d(Constants.LOG_TAG, "Prefetching next page failed", e.getCause());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (page == null) {
+            return null;
+        }
+        synchronized (mPageIterator) {
+            return ((PageIteratorWithSaveableState<T>) mPageIterator).complete(page);
+        }
     }
 
     @Override
@@ -0,0 +1,168 @@
+package com.gh4a.loader;
+
+import android.util.Log;
+
+import com.gh4a.Constants;
+import com.gh4a.net.ModelTypeAdapterFactory;
+import com.gh4a.utils.DiskCache;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import org.eclipse.egit.github.core.client.PagedRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the items of paged lists on disk, so a list can be shown right away
+ * when it's recreated after the process was killed, instead of downloading
+ * all pages the user had scrolled through again. Also holds the pages a
+ * {@link PageWindow} dropped from memory. Entries are gzipped JSON, keyed by
+ * request. Only the latest snapshot of a request is kept, it's identified by
+ * the time it was taken.
+ */
+public class PageSnapshotCache {
+    private static final String KEY_TIME = "time";
+    private static final String KEY_ITEMS = "items";
+
+    private final DiskCache mStore;
+    private final ExecutorService mWriteExecutor = Executors.newSingleThreadExecutor();
+
+    public PageSnapshotCache(File directory, long maxSize) {
+        mStore = new DiskCache(directory, maxSize);
+    }
+
+    public static String makeKey(PagedRequest<?> request) {
+        // the page parameters change while iterating
+        TreeMap<String, String> params = request.getParams() != null
+                ? new TreeMap<>(request.getParams()) : new TreeMap<String, String>();
+        return request.getUri() + " " + params + " " + request.getPageSize();
+    }
+
+    /**
+     * @return the type the list items of the request are parsed as, or null
+     *         if the response isn't a plain list
+     */
+    public static Type getListType(PagedRequest<?> request) {
+        Type type = request.getArrayType() != null ? request.getArrayType() : request.getType();
+        if (type == null || !Collection.class.isAssignableFrom(TypeToken.get(type).getRawType())) {
+            return null;
+        }
+        return type;
+    }
+
+    /**
+     * Stores the items in the background.
+     *
+     * @param listType type of the item list, as used for parsing responses
+     */
+    public void put(final String key, final long time, final List<?> items, final Type listType) {
+        mWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mStore.put(key, encode(time, items, listType));
+                } catch (IOException | RuntimeException e) {
+                    Log.w(Constants.LOG_TAG, "Could not write snapshot of " + key, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the items, or null if there's no snapshot taken at the given time
+     */
+    public <T> List<T> get(final String key, long time, Type listType) {
+        byte[] data;
+        try {
+            // queued behind pending writes, one of them might be for this key
+            data = mWriteExecutor.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() {
+                    return mStore.get(key);
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Log.w(Constants.LOG_TAG, "Could not read snapshot of " + key, e.getCause());
+            return null;
+        }
+        if (data == null) {
+            return null;
+        }
+        try {
+            return decode(data, time, listType);
+        } catch (IOException | JsonParseException e) {
+            Log.w(Constants.LOG_TAG, "Could not read snapshot of " + key, e);
+            mStore.remove(key);
+            return null;
+        }
+    }
+
+    public void clear() {
+        mStore.clear();
+    }
+
+    private static byte[] encode(long time, List<?> items, Type listType) throws IOException {
+        Gson gson = ModelTypeAdapterFactory.getGson();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonWriter writer = new JsonWriter(
+                new OutputStreamWriter(new GZIPOutputStream(out), "UTF-8"));
+        try {
+            writer.beginObject();
+            writer.name(KEY_TIME).value(time);
+            writer.name(KEY_ITEMS);
+            gson.toJson(items, listType, writer);
+            writer.endObject();
+        } finally {
+            writer.close();
+        }
+        return out.toByteArray();
+    }
+
+    private static <T> List<T> decode(byte[] data, long time, Type listType) throws IOException {
+        Gson gson = ModelTypeAdapterFactory.getGson();
+        JsonReader reader = new JsonReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(data)), "UTF-8"));
+        try {
+            List<T> items = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (KEY_TIME.equals(name)) {
+                    if (reader.nextLong() != time) {
+                        // a newer snapshot, or one of an earlier instance of the list
+                        return null;
+                    }
+                } else if (KEY_ITEMS.equals(name)) {
+                    items = gson.fromJson(reader, listType);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            return items;
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.gh4a.loader;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Append-only storage for the pages of a paged list. Appending a page
+ * doesn't copy the items loaded before it, and snapshots handed out
+ * to the UI stay unchanged while further pages are appended.
+ * Not thread safe, appending is done by the loading thread only.
+ */
+class PageStore<T> {
+    private final ArrayList<List<T>> mPages = new ArrayList<>();
+    private int[] mPageStarts = new int[8];
+    private int mSize;
+    // items preceding the first page, which aren't kept
+    private final int mDroppedCount;
+
+    public PageStore() {
+        this(0);
+    }
+
+    public PageStore(int droppedCount) {
+        mDroppedCount = droppedCount;
+    }
+
+    /**
+     * @return the number of items, including the dropped ones
+     */
+    public int size() {
+        return mDroppedCount + mSize;
+    }
+
+    /**
+     * @return the appended items
+     */
+    public List<T> append(Collection<T> items) {
+        List<T> page = Collections.unmodifiableList(new ArrayList<>(items));
+        if (page.isEmpty()) {
+            return page;
+        }
+        if (mPages.size() == mPageStarts.length) {
+            mPageStarts = Arrays.copyOf(mPageStarts, mPageStarts.length * 2);
+        }
+        mPageStarts[mPages.size()] = mSize;
+        mPages.add(page);
+        mSize += page.size();
+        return page;
+    }
+
+    /**
+     * Returns a list containing the items appended so far, without the dropped ones. The cost
+     * depends on the number of pages only, not on the number of items.
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> snapshot() {
+        int pageCount = mPages.size();
+        return new Snapshot<>(mPages.toArray(new List[pageCount]),
+                Arrays.copyOf(mPageStarts, pageCount), mSize);
+    }
+
+    private static class Snapshot<T> extends AbstractList<T> implements RandomAccess {
+        private final List<T>[] mPages;
+        private final int[] mPageStarts;
+        private final int mSize;
+
+        Snapshot(List<T>[] pages, int[] pageStarts, int size) {
+            mPages = pages;
+            mPageStarts = pageStarts;
+            mSize = size;
+        }
+
+        @Override
+        public T get(int location) {
+            if (location < 0 || location >= mSize) {
+                throw new IndexOutOfBoundsException("Index " + location + ", size " + mSize);
+            }
+            int page = Arrays.binarySearch(mPageStarts, location);
+            if (page < 0) {
+                // not a page start, so it's in the page before the insertion point
+                page = -page - 2;
+            }
+            return mPages[page].get(location - mPageStarts[page]);
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+    }
+}
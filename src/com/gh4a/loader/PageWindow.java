@@ -0,0 +1,239 @@
+package com.gh4a.loader;
+
+import android.os.AsyncTask;
+import android.support.v4.os.AsyncTaskCompat;
+import android.util.Log;
+
+import com.gh4a.Constants;
+import com.gh4a.Gh4Application;
+import com.gh4a.net.ParallelPageFetcher;
+
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.PagedRequest;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Paged list which only keeps the pages around the visible part in memory,
+ * so very long lists don't grow the heap without limit. Pages further away
+ * are written to disk and dropped; their items read as null, to be shown as
+ * placeholders. Once such a page gets close to the visible part again, it's
+ * read back from disk, or fetched again if it was evicted from there.
+ *
+ * Pages must be appended in request order, one page per call. Must only be
+ * used from the main thread.
+ */
+public class PageWindow<T> extends AbstractList<T> implements RandomAccess {
+    public interface Callback<T> {
+        void onItemsRestored(int position, int count);
+        /**
+         * Called if a page that was dropped can't be restored as it was,
+         * because it changed on the server and was evicted from disk.
+         */
+        void onWindowInvalidated();
+        /**
+         * Returns a value that identifies the item, e.g. its ID, or null if
+         * there is none. Used to check whether a refetched page still
+         * contains the same items, as lists like event feeds shift.
+         */
+        Object getItemKey(T item);
+    }
+
+    private final PagedRequest<T> mRequest;
+    private final GitHubClient mClient;
+    private final Type mListType;
+    private final String mCacheKey;
+    private final int mMargin;
+    private final Callback<T> mCallback;
+    private volatile PageIteratorLoader.ItemPreparer<T> mItemPreparer;
+
+    // dropped pages are null
+    private final ArrayList<List<T>> mPages = new ArrayList<>();
+    private final ArrayList<Integer> mPageSizes = new ArrayList<>();
+    // keys of the first and last item of each page, null for empty pages
+    private final ArrayList<Object[]> mPageBoundaryKeys = new ArrayList<>();
+    private int[] mPageStarts = new int[8];
+    private int mSize;
+    // identifies the pages written to disk by this instance of the list
+    private long mGeneration = System.currentTimeMillis();
+    private final HashSet<Integer> mPagesRestoring = new HashSet<>();
+
+    /**
+     * @param margin number of pages kept on each side of the visible ones
+     */
+    public PageWindow(PagedRequest<T> request, GitHubClient client, int margin,
+            Callback<T> callback) {
+        mRequest = request;
+        mClient = client;
+        mListType = PageSnapshotCache.getListType(request);
+        mCacheKey = PageSnapshotCache.makeKey(request);
+        mMargin = margin;
+        mCallback = callback;
+    }
+
+    /**
+     * Sets the preparer for the items of restored pages.
+     */
+    public void setItemPreparer(PageIteratorLoader.ItemPreparer<T> preparer) {
+        mItemPreparer = preparer;
+    }
+
+    @Override
+    public T get(int location) {
+        if (location < 0 || location >= mSize) {
+            throw new IndexOutOfBoundsException("Index " + location + ", size " + mSize);
+        }
+        int page = getPage(location);
+        List<T> items = mPages.get(page);
+        return items != null ? items.get(location - mPageStarts[page]) : null;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    public void appendPage(Collection<T> items) {
+        int page = mPages.size();
+        if (page == mPageStarts.length) {
+            mPageStarts = Arrays.copyOf(mPageStarts, page * 2);
+        }
+        mPageStarts[page] = mSize;
+        mPages.add(Collections.unmodifiableList(new ArrayList<>(items)));
+        mPageSizes.add(items.size());
+        mPageBoundaryKeys.add(getBoundaryKeys(mPages.get(page)));
+        mSize += items.size();
+    }
+
+    @Override
+    public void clear() {
+        mPages.clear();
+        mPageSizes.clear();
+        mPageBoundaryKeys.clear();
+        mSize = 0;
+        mPagesRestoring.clear();
+        // makes restores of the previous pages that are still running void
+        mGeneration = Math.max(System.currentTimeMillis(), mGeneration + 1);
+    }
+
+    /**
+     * Drops the pages far away from the given positions and restores
+     * the dropped pages close to them.
+     */
+    public void setVisibleRange(int first, int last) {
+        if (mSize == 0 || mListType == null || last < 0) {
+            return;
+        }
+        int firstPage = Math.max(0, getPage(Math.max(first, 0)) - mMargin);
+        int lastPage = Math.min(mPages.size() - 1, getPage(Math.min(last, mSize - 1)) + mMargin);
+
+        for (int page = 0; page < mPages.size(); page++) {
+            boolean keep = page >= firstPage && page <= lastPage;
+            if (!keep && mPages.get(page) != null) {
+                dropPage(page);
+            } else if (keep && mPages.get(page) == null && !mPagesRestoring.contains(page)) {
+                mPagesRestoring.add(page);
+                AsyncTaskCompat.executeParallel(new RestorePageTask(page, mGeneration));
+            }
+        }
+    }
+
+    private void dropPage(int page) {
+        Gh4Application.get().getPageSnapshotCache().put(getPageKey(page),
+                mGeneration, mPages.get(page), mListType);
+        mPages.set(page, null);
+    }
+
+    private void onPageRestored(int page, long generation, List<T> items) {
+        if (generation != mGeneration) {
+            return;
+        }
+        mPagesRestoring.remove(page);
+        if (mPages.get(page) != null) {
+            return;
+        }
+        if (items == null) {
+            // failed, try again on the next scroll
+            return;
+        }
+        if (items.size() != mPageSizes.get(page)
+                || !Arrays.equals(getBoundaryKeys(items), mPageBoundaryKeys.get(page))) {
+            // the items moved to other pages meanwhile
+            mCallback.onWindowInvalidated();
+            return;
+        }
+        mPages.set(page, Collections.unmodifiableList(items));
+        mCallback.onItemsRestored(mPageStarts[page], items.size());
+    }
+
+    private Object[] getBoundaryKeys(List<T> items) {
+        if (items.isEmpty()) {
+            return null;
+        }
+        return new Object[] {
+            mCallback.getItemKey(items.get(0)),
+            mCallback.getItemKey(items.get(items.size() - 1))
+        };
+    }
+
+    private String getPageKey(int page) {
+        return mCacheKey + " page " + page;
+    }
+
+    private int getPage(int location) {
+        int page = Arrays.binarySearch(mPageStarts, 0, mPages.size(), location);
+        if (page < 0) {
+            // not a page start, so it's in the page before the insertion point
+            page = -page - 2;
+        }
+        // empty pages share their start with the following page
+        while (page < mPages.size() - 1 && mPageStarts[page + 1] == location) {
+            page++;
+        }
+        return page;
+    }
+
+    private class RestorePageTask extends AsyncTask<Void, Void, List<T>> {
+        private final int mPage;
+        private final long mTaskGeneration;
+
+        public RestorePageTask(int page, long generation) {
+            mPage = page;
+            mTaskGeneration = generation;
+        }
+
+        @Override
+        protected List<T> doInBackground(Void... params) {
+            List<T> items = Gh4Application.get().getPageSnapshotCache().get(
+                    getPageKey(mPage), mTaskGeneration, mListType);
+            if (items == null) {
+                try {
+                    items = new ArrayList<>(ParallelPageFetcher.getPage(mClient, mRequest,
+                            PagedRequest.PAGE_FIRST + mPage));
+                } catch (IOException e) {
+                    Log.d(Constants.LOG_TAG, "Could not restore page " + mPage, e);
+                    return null;
+                }
+            }
+            PageIteratorLoader.ItemPreparer<T> preparer = mItemPreparer;
+            if (preparer != null) {
+                preparer.prepareItems(items);
+            }
+            return items;
+        }
+
+        @Override
+        protected void onPostExecute(List<T> items) {
+            onPageRestored(mPage, mTaskGeneration, items);
+        }
+    }
+}
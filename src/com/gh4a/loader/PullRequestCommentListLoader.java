@@ -1,7 +1,7 @@
 package com.gh4a.loader;
 
 import java.io.IOException;
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.egit.github.core.CommitComment;
@@ -11,6 +11,7 @@ import org.eclipse.egit.github.core.service.PullRequestService;
 import android.content.Context;
 
 import com.gh4a.Gh4Application;
+import com.gh4a.net.RequestBatch;
 
 public class PullRequestCommentListLoader extends IssueCommentListLoader {
     private String mRepoOwner;
@@ -26,24 +27,27 @@ public class PullRequestCommentListLoader extends IssueCommentListLoader {
     }
 
     @Override
-    public List<IssueEventHolder> doLoadInBackground() throws IOException {
+    protected void addRequests(RequestBatch<List<IssueEventHolder>> batch) {
         // combine issue comments and pull request comments (to get comments on diff)
-        List<IssueEventHolder> events = super.doLoadInBackground();
+        super.addRequests(batch);
 
-        PullRequestService pullRequestService = (PullRequestService)
+        final PullRequestService pullRequestService = (PullRequestService)
                 Gh4Application.get().getService(Gh4Application.PULL_SERVICE);
-        List<CommitComment> commitComments =
-                pullRequestService.getComments(new RepositoryId(mRepoOwner, mRepoName), mIssueNumber);
-
-        // only add comment that is not outdated
-        for (CommitComment commitComment: commitComments) {
-            if (commitComment.getPosition() != -1) {
-                events.add(new IssueEventHolder(commitComment));
+        batch.submit(new RequestBatch.Request<List<IssueEventHolder>>() {
+            @Override
+            public List<IssueEventHolder> execute() throws IOException {
+                List<CommitComment> commitComments = pullRequestService.getComments(
+                        new RepositoryId(mRepoOwner, mRepoName), mIssueNumber);
+                List<IssueEventHolder> result = new ArrayList<>();
+
+                // only add comment that is not outdated
+                for (CommitComment commitComment: commitComments) {
+                    if (commitComment.getPosition() != -1) {
+                        result.add(new IssueEventHolder(commitComment));
+                    }
+                }
+                return result;
             }
-        }
-
-        Collections.sort(events, SORTER);
-
-        return events;
+        });
     }
 }
@@ -3,8 +3,11 @@ package com.gh4a.loader;
 import android.content.Context;
 
 import com.gh4a.Gh4Application;
+import com.gh4a.net.ParallelPageFetcher;
 
+import org.eclipse.egit.github.core.PullRequest;
 import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.client.PagedRequest;
 import org.eclipse.egit.github.core.service.PullRequestService;
 
 import java.io.IOException;
@@ -24,6 +27,9 @@ public class PullRequestCountLoader extends BaseLoader<Integer> {
     public Integer doLoadInBackground() throws IOException {
         PullRequestService pullRequestService = (PullRequestService)
                 Gh4Application.get().getService(Gh4Application.PULL_SERVICE);
-        return pullRequestService.getPullRequests(mRepository, mState).size();
+        // only the count is needed, so don't fetch the actual pull requests
+        PagedRequest<PullRequest> request =
+                pullRequestService.pagePullRequests(mRepository, mState).getRequest();
+        return ParallelPageFetcher.getItemCount(pullRequestService.getClient(), request);
     }
 }
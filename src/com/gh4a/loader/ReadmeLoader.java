@@ -3,7 +3,6 @@ package com.gh4a.loader;
 import java.io.IOException;
 
 import org.eclipse.egit.github.core.RepositoryId;
-import org.eclipse.egit.github.core.client.GitHubClient;
 import org.eclipse.egit.github.core.client.RequestException;
 import org.eclipse.egit.github.core.service.ContentsService;
 
@@ -28,11 +27,8 @@ public class ReadmeLoader extends BaseLoader<String> {
 
     @Override
     public String doLoadInBackground() throws IOException {
-        Gh4Application app = (Gh4Application) getContext().getApplicationContext();
-        GitHubClient client = new DefaultClient("application/vnd.github.v3.html");
-        client.setOAuth2Token(app.getAuthToken());
-
-        ContentsService contentService = new ContentsService(client);
+        ContentsService contentService = (ContentsService) Gh4Application.get().getService(
+                Gh4Application.CONTENTS_SERVICE, DefaultClient.HEADER_ACCEPT_HTML);
         try {
             String html = contentService.getReadmeHtml(new RepositoryId(mRepoOwner, mRepoName), mRef);
             if (html != null) {
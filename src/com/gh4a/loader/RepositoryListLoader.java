@@ -4,6 +4,7 @@ import android.content.Context;
 
 import com.gh4a.Constants;
 import com.gh4a.Gh4Application;
+import com.gh4a.net.ParallelPageFetcher;
 import com.gh4a.utils.ApiHelpers;
 
 import org.eclipse.egit.github.core.Repository;
@@ -36,19 +37,22 @@ public class RepositoryListLoader extends BaseLoader<Collection<Repository>> {
             if (mSize > 0) {
                 return repoService.pageRepositories(mFilterData, mSize).next();
             } else {
-                return repoService.getRepositories(mFilterData);
+                return ParallelPageFetcher.getAll(repoService.getClient(),
+                        repoService.pageRepositories(mFilterData).getRequest());
             }
         } else if (Constants.User.TYPE_ORG.equals(mUserType)) {
             if (mSize > 0) {
                 return repoService.pageOrgRepositories(mLogin, mFilterData, mSize).next();
             } else {
-                return repoService.getOrgRepositories(mLogin, mFilterData);
+                return ParallelPageFetcher.getAll(repoService.getClient(),
+                        repoService.pageOrgRepositories(mLogin, mFilterData).getRequest());
             }
         } else {
             if (mSize > 0) {
                 return repoService.pageRepositories(mLogin, mFilterData, mSize).next();
             } else {
-                return repoService.getRepositories(mLogin, mFilterData);
+                return ParallelPageFetcher.getAll(repoService.getClient(),
+                        repoService.pageRepositories(mLogin, mFilterData).getRequest());
             }
         }
     }
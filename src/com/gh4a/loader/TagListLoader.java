@@ -6,11 +6,14 @@ import java.util.List;
 
 import org.eclipse.egit.github.core.RepositoryId;
 import org.eclipse.egit.github.core.RepositoryTag;
+import org.eclipse.egit.github.core.client.IGitHubConstants;
 import org.eclipse.egit.github.core.service.RepositoryService;
 
 import android.content.Context;
 
 import com.gh4a.Gh4Application;
+import com.gh4a.net.ParallelPageFetcher;
+import com.google.gson.reflect.TypeToken;
 
 public class TagListLoader extends BaseLoader<List<RepositoryTag>> {
     private String mRepoOwner;
@@ -26,7 +29,9 @@ public class TagListLoader extends BaseLoader<List<RepositoryTag>> {
     public List<RepositoryTag> doLoadInBackground() throws IOException {
         RepositoryService repoService = (RepositoryService)
                 Gh4Application.get().getService(Gh4Application.REPO_SERVICE);
-        List<RepositoryTag> tags = repoService.getTags(new RepositoryId(mRepoOwner, mRepoName));
+        List<RepositoryTag> tags = ParallelPageFetcher.getAllForRepository(
+                repoService.getClient(), new RepositoryId(mRepoOwner, mRepoName),
+                IGitHubConstants.SEGMENT_TAGS, new TypeToken<List<RepositoryTag>>() {}.getType());
         ArrayList<RepositoryTag> result = new ArrayList<>();
 
         if (tags != null) {
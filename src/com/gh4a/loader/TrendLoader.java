@@ -3,6 +3,7 @@ package com.gh4a.loader;
 import android.content.Context;
 
 import com.gh4a.holder.Trend;
+import com.gh4a.net.HttpTransport;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -13,7 +14,6 @@ import java.io.DataOutputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -27,9 +27,14 @@ public class TrendLoader extends BaseLoader<List<Trend>> {
         mQueryTarget = queryTarget;
     }
 
+    @Override
+    protected boolean supportsCachedLoad() {
+        // not fetched through the API client
+        return false;
+    }
+
     @Override
     public List<Trend> doLoadInBackground() throws Exception {
-        URL url = new URL(mUrl);
         List<Trend> trends = new ArrayList<>();
 
         HttpURLConnection connection = null;
@@ -39,7 +44,7 @@ public class TrendLoader extends BaseLoader<List<Trend>> {
                 new JSONObject().put("webpage/url", mQueryTarget));
 
         try {
-            connection = (HttpURLConnection) url.openConnection();
+            connection = HttpTransport.open(mUrl);
             connection.setRequestMethod("POST");
             connection.setRequestProperty("Content-Type", "application/json");
             connection.setDoInput(true);
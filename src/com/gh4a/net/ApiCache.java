@@ -0,0 +1,267 @@
+package com.gh4a.net;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.provider.BaseColumns;
+import android.util.Log;
+
+import com.gh4a.Constants;
+import com.gh4a.db.DbHelper;
+import com.gh4a.utils.DiskCache;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Persistent cache of API responses. The response metadata (validators,
+ * pagination links, fetch time) is kept in the database, keyed by URL,
+ * account and Accept header; the bodies are kept in files, as they can
+ * easily exceed what fits into a cursor window.
+ *
+ * Every entry has a time to live depending on its resource type. Within that
+ * time it may be used without asking the server, afterwards it needs to be
+ * revalidated, but still is good enough to show while offline.
+ */
+public class ApiCache {
+    public interface Columns extends BaseColumns {
+        String URL = "url";
+        String ACCOUNT = "account";
+        String ACCEPT = "accept";
+        String RESOURCE_TYPE = "resource_type";
+        String FETCHED_AT = "fetched_at";
+        String ETAG = "etag";
+        String LAST_MODIFIED = "last_modified";
+        String LINKS = "links";
+        String CONTENT_ENCODING = "content_encoding";
+    }
+
+    public static final int TYPE_OTHER = 0;
+    public static final int TYPE_USER = 1;
+    public static final int TYPE_REPOSITORY = 2;
+    public static final int TYPE_REPOSITORY_METADATA = 3;
+    public static final int TYPE_CONTENT = 4;
+    public static final int TYPE_ISSUES = 5;
+    public static final int TYPE_EVENTS = 6;
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long HOUR = 60 * MINUTE;
+    // indexed by resource type
+    private static final long[] TIME_TO_LIVE = new long[] {
+        5 * MINUTE,     /* other */
+        24 * HOUR,      /* users */
+        HOUR,           /* repositories */
+        30 * MINUTE,    /* labels, milestones, branches, ... */
+        HOUR,           /* file contents and readmes */
+        2 * MINUTE,     /* issues, pull requests, comments */
+        MINUTE          /* event feeds */
+    };
+
+    // rows older than that are dropped, their bodies are likely evicted anyway
+    private static final long MAX_ROW_AGE = 30 * 24 * HOUR;
+
+    // requests for a single item per page are made to count list items
+    private static final Pattern COUNT_REQUEST_PATTERN = Pattern.compile("[?&]per_page=1(&|$)");
+
+    private static final String[] PROJECTION = new String[] {
+        Columns.RESOURCE_TYPE, Columns.FETCHED_AT, Columns.ETAG,
+        Columns.LAST_MODIFIED, Columns.LINKS, Columns.CONTENT_ENCODING
+    };
+    private static final String SELECTION = Columns.URL + " = ? and "
+            + Columns.ACCOUNT + " = ? and " + Columns.ACCEPT + " = ?";
+
+    public static class Entry {
+        public final int resourceType;
+        public final long fetchedAt;
+        public final String etag;
+        public final String lastModified;
+        public final String links;
+        // content encoding of body, the body is stored as received
+        public final String contentEncoding;
+        public final byte[] body;
+
+        public Entry(int resourceType, long fetchedAt, String etag, String lastModified,
+                String links, String contentEncoding, byte[] body) {
+            this.resourceType = resourceType;
+            this.fetchedAt = fetchedAt;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.links = links;
+            this.contentEncoding = contentEncoding;
+            this.body = body;
+        }
+    }
+
+    private final DbHelper mDbHelper;
+    private final DiskCache mStore;
+    private final AtomicInteger mHitCount = new AtomicInteger();
+    private final AtomicInteger mMissCount = new AtomicInteger();
+    private volatile long mLastModificationTime;
+    private boolean mTrimmed;
+
+    public ApiCache(Context context, File directory, long maxSize) {
+        this(DbHelper.getInstance(context), directory, maxSize);
+    }
+
+    public ApiCache(DbHelper dbHelper, File directory, long maxSize) {
+        mDbHelper = dbHelper;
+        mStore = new DiskCache(directory, maxSize);
+    }
+
+    private static String makeKey(String url, String account, String accept) {
+        return account + " " + accept + " " + url;
+    }
+
+    public Entry get(String url, String account, String accept) {
+        String[] args = new String[] { url, account, accept };
+        Cursor cursor = null;
+        try {
+            SQLiteDatabase db = mDbHelper.getReadableDatabase();
+            cursor = db.query(DbHelper.RESPONSE_CACHE_TABLE, PROJECTION,
+                    SELECTION, args, null, null, null);
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+
+            byte[] body = mStore.get(makeKey(url, account, accept));
+            if (body == null) {
+                // the body was evicted
+                db = mDbHelper.getWritableDatabase();
+                db.delete(DbHelper.RESPONSE_CACHE_TABLE, SELECTION, args);
+                return null;
+            }
+            return new Entry(cursor.getInt(0), cursor.getLong(1), cursor.getString(2),
+                    cursor.getString(3), cursor.getString(4), cursor.getString(5), body);
+        } catch (SQLiteException e) {
+            Log.w(Constants.LOG_TAG, "Could not query response cache", e);
+            return null;
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+    }
+
+    public void put(String url, String account, String accept, Entry entry) {
+        ContentValues values = new ContentValues();
+        values.put(Columns.URL, url);
+        values.put(Columns.ACCOUNT, account);
+        values.put(Columns.ACCEPT, accept);
+        values.put(Columns.RESOURCE_TYPE, entry.resourceType);
+        values.put(Columns.FETCHED_AT, entry.fetchedAt);
+        values.put(Columns.ETAG, entry.etag);
+        values.put(Columns.LAST_MODIFIED, entry.lastModified);
+        values.put(Columns.LINKS, entry.links);
+        values.put(Columns.CONTENT_ENCODING, entry.contentEncoding);
+
+        mStore.put(makeKey(url, account, accept), entry.body);
+        try {
+            SQLiteDatabase db = mDbHelper.getWritableDatabase();
+            db.insert(DbHelper.RESPONSE_CACHE_TABLE, null, values);
+            trimIfNeeded(db);
+        } catch (SQLiteException e) {
+            Log.w(Constants.LOG_TAG, "Could not update response cache", e);
+        }
+    }
+
+    /**
+     * Marks an entry as just fetched, after the server confirmed it's unchanged.
+     */
+    public void touch(String url, String account, String accept) {
+        ContentValues values = new ContentValues();
+        values.put(Columns.FETCHED_AT, System.currentTimeMillis());
+        try {
+            mDbHelper.getWritableDatabase().update(DbHelper.RESPONSE_CACHE_TABLE,
+                    values, SELECTION, new String[] { url, account, accept });
+        } catch (SQLiteException e) {
+            Log.w(Constants.LOG_TAG, "Could not update response cache", e);
+        }
+    }
+
+    /**
+     * Whether the entry can be used without revalidating it with the server.
+     */
+    public boolean isFresh(Entry entry) {
+        long now = System.currentTimeMillis();
+        // after the user changed something, everything fetched before
+        // could be outdated
+        return entry.fetchedAt > mLastModificationTime
+                && now - entry.fetchedAt < getTimeToLive(entry.resourceType);
+    }
+
+    /**
+     * Needs to be called when a request modifying data on the server is made.
+     */
+    public void onDataModified() {
+        mLastModificationTime = System.currentTimeMillis();
+    }
+
+    public void clear() {
+        mStore.clear();
+        try {
+            mDbHelper.getWritableDatabase().delete(DbHelper.RESPONSE_CACHE_TABLE, null, null);
+        } catch (SQLiteException e) {
+            Log.w(Constants.LOG_TAG, "Could not clear response cache", e);
+        }
+    }
+
+    public void recordHit() {
+        mHitCount.incrementAndGet();
+    }
+
+    public void recordMiss() {
+        mMissCount.incrementAndGet();
+    }
+
+    public int getHitCount() {
+        return mHitCount.get();
+    }
+
+    public int getMissCount() {
+        return mMissCount.get();
+    }
+
+    public static long getTimeToLive(int resourceType) {
+        return TIME_TO_LIVE[resourceType];
+    }
+
+    public static int getResourceType(String url) {
+        String template = RequestMetrics.getEndpointTemplate(url);
+        if (template.startsWith("/repos/{owner}/{repo}/")
+                && COUNT_REQUEST_PATTERN.matcher(url).find()) {
+            // counts are shown along with the repository, so they live as long
+            return TYPE_REPOSITORY;
+        } else if (template.equals("/user") || template.equals("/users/{user}")
+                || template.equals("/orgs/{org}")) {
+            return TYPE_USER;
+        } else if (template.equals("/repos/{owner}/{repo}")) {
+            return TYPE_REPOSITORY;
+        } else if (template.endsWith("/events") || template.endsWith("/received_events")
+                || template.endsWith("/events/public")) {
+            return TYPE_EVENTS;
+        } else if (template.contains("/issues") || template.contains("/pulls")
+                || template.contains("/comments")) {
+            return TYPE_ISSUES;
+        } else if (template.contains("/contents") || template.endsWith("/readme")) {
+            return TYPE_CONTENT;
+        } else if (template.endsWith("/labels") || template.endsWith("/milestones")
+                || template.endsWith("/collaborators") || template.endsWith("/branches")
+                || template.endsWith("/tags") || template.endsWith("/contributors")) {
+            return TYPE_REPOSITORY_METADATA;
+        }
+        return TYPE_OTHER;
+    }
+
+    private synchronized void trimIfNeeded(SQLiteDatabase db) {
+        if (mTrimmed) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - MAX_ROW_AGE;
+        db.delete(DbHelper.RESPONSE_CACHE_TABLE, Columns.FETCHED_AT + " < ?",
+                new String[] { String.valueOf(cutoff) });
+        mTrimmed = true;
+    }
+}
@@ -0,0 +1,63 @@
+package com.gh4a.net;
+
+import java.io.IOException;
+
+/**
+ * Controls how API requests made by the current thread use the {@link ApiCache}.
+ * Loaders set this up around their work, see {@link #begin(int)}.
+ */
+public class CachePolicy {
+    // use cached responses within their time to live, revalidate others
+    public static final int MODE_DEFAULT = 0;
+    // always check with the server, e.g. when the user asked for a refresh
+    public static final int MODE_REVALIDATE = 1;
+    // only use cached responses regardless of their age, never hit the network
+    public static final int MODE_CACHE_ONLY = 2;
+
+    /**
+     * Thrown in {@link #MODE_CACHE_ONLY} if a response isn't cached.
+     */
+    public static class CacheMissException extends IOException {
+        public CacheMissException(String url) {
+            super("No cached response for " + url);
+        }
+    }
+
+    private static final ThreadLocal<CachePolicy> sCurrent = new ThreadLocal<>();
+
+    private final int mMode;
+    private boolean mServedStale;
+
+    private CachePolicy(int mode) {
+        mMode = mode;
+    }
+
+    public static CachePolicy begin(int mode) {
+        CachePolicy policy = new CachePolicy(mode);
+        sCurrent.set(policy);
+        return policy;
+    }
+
+    public static void end() {
+        sCurrent.remove();
+    }
+
+    public static int getCurrentMode() {
+        CachePolicy policy = sCurrent.get();
+        return policy != null ? policy.mMode : MODE_DEFAULT;
+    }
+
+    /**
+     * Called when a response older than its time to live was used.
+     */
+    public static void reportStaleResponse() {
+        CachePolicy policy = sCurrent.get();
+        if (policy != null) {
+            policy.mServedStale = true;
+        }
+    }
+
+    public boolean hasServedStaleResponse() {
+        return mServedStale;
+    }
+}
@@ -0,0 +1,403 @@
+package com.gh4a.net;
+
+import android.util.Log;
+
+import com.gh4a.Constants;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal local HTTP server standing in for api.github.com, used for
+ * reproducible benchmarks. In replay mode it answers GET requests from a
+ * {@link FixtureStore}, in record mode it forwards them to the real API and
+ * stores the responses.
+ *
+ * Link headers are rewritten to point to the server, conditional requests
+ * are answered with 304 if the ETag matches, and rate limit headers are
+ * synthesized so that they behave the same on every run.
+ * Point a client to {@link #getHostname()}, {@link #getPort()} and the
+ * http scheme to use it.
+ */
+public class FixtureServer {
+    public static final int MODE_REPLAY = 0;
+    public static final int MODE_RECORD = 1;
+
+    private static final String UPSTREAM_URL = "https://api.github.com";
+    // prefix the egit client adds for hosts other than api.github.com
+    private static final String API_PREFIX = "/api/v3";
+
+    private static final int RATE_LIMIT = 5000;
+    private static final int RATE_LIMIT_WINDOW = 3600; /* seconds */
+
+    private static final String[] FORWARDED_REQUEST_HEADERS = new String[] {
+        "Accept", "Accept-Encoding", "Authorization", "User-Agent"
+    };
+    private static final String[] SKIPPED_RESPONSE_HEADERS = new String[] {
+        "Connection", "Content-Length", "Transfer-Encoding", "Keep-Alive",
+        "X-RateLimit-Limit", "X-RateLimit-Remaining", "X-RateLimit-Reset"
+    };
+
+    private final FixtureStore mStore;
+    private final int mMode;
+    private volatile long mLatency;
+
+    private ServerSocket mServerSocket;
+    private ExecutorService mExecutor;
+    private final AtomicInteger mRequestCount = new AtomicInteger();
+    private final AtomicInteger mRemainingRequests = new AtomicInteger(RATE_LIMIT);
+    private long mRateLimitReset;
+
+    public FixtureServer(FixtureStore store, int mode) {
+        mStore = store;
+        mMode = mode;
+    }
+
+    /**
+     * Sets the delay added before every response, in ms.
+     */
+    public void setLatency(long latency) {
+        mLatency = latency;
+    }
+
+    public synchronized void start() throws IOException {
+        if (mServerSocket != null) {
+            return;
+        }
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mExecutor = Executors.newCachedThreadPool();
+        mRateLimitReset = System.currentTimeMillis() / 1000 + RATE_LIMIT_WINDOW;
+        mRemainingRequests.set(RATE_LIMIT);
+
+        final ServerSocket serverSocket = mServerSocket;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections(serverSocket);
+            }
+        });
+    }
+
+    public synchronized void stop() {
+        if (mServerSocket == null) {
+            return;
+        }
+        try {
+            mServerSocket.close();
+        } catch (IOException e) {
+            // ignored
+        }
+        mExecutor.shutdownNow();
+        mServerSocket = null;
+        mExecutor = null;
+    }
+
+    public String getHostname() {
+        return "127.0.0.1";
+    }
+
+    public synchronized int getPort() {
+        return mServerSocket != null ? mServerSocket.getLocalPort() : -1;
+    }
+
+    public int getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    private void acceptConnections(ServerSocket serverSocket) {
+        while (!serverSocket.isClosed()) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                // server was stopped
+                return;
+            }
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    handleConnection(socket);
+                }
+            });
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            // serve requests until the client closes the connection
+            while (handleRequest(in, out)) {
+                out.flush();
+            }
+        } catch (SocketException e) {
+            // connection was closed by the client
+        } catch (IOException e) {
+            Log.w(Constants.LOG_TAG, "Fixture server connection failed", e);
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ignored
+            }
+        }
+    }
+
+    private boolean handleRequest(InputStream in, OutputStream out) throws IOException {
+        String requestLine = readLine(in);
+        if (requestLine == null || requestLine.isEmpty()) {
+            return false;
+        }
+
+        HashMap<String, String> requestHeaders = new HashMap<>();
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                requestHeaders.put(line.substring(0, colon).trim(),
+                        line.substring(colon + 1).trim());
+            }
+        }
+        skipRequestBody(in, getHeader(requestHeaders, "Content-Length"));
+        mRequestCount.incrementAndGet();
+
+        String[] parts = requestLine.split(" ");
+        if (parts.length < 2 || !"GET".equals(parts[0])) {
+            writeError(out, 405, "Method Not Allowed", "Only GET requests are supported");
+            return true;
+        }
+
+        String path = parts[1];
+        if (path.startsWith(API_PREFIX)) {
+            path = path.substring(API_PREFIX.length());
+        }
+
+        String accept = getHeader(requestHeaders, "Accept");
+        String key = FixtureStore.makeKey(path, accept);
+        FixtureStore.Fixture fixture = mStore.get(key);
+        if (fixture == null && mMode == MODE_RECORD) {
+            fixture = fetchUpstream(path, requestHeaders);
+            if (fixture != null) {
+                mStore.put(key, fixture);
+            }
+        }
+
+        long latency = mLatency;
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+
+        if (fixture == null) {
+            writeError(out, 404, "Not Found", "No fixture for " + path);
+            return true;
+        }
+
+        String etag = fixture.getHeader("ETag");
+        String ifNoneMatch = getHeader(requestHeaders, "If-None-Match");
+        if (etag != null && etag.equals(ifNoneMatch)) {
+            // like on GitHub, conditional requests don't count against the limit
+            ArrayList<String> headers = new ArrayList<>();
+            headers.add("ETag");
+            headers.add(etag);
+            addRateLimitHeaders(headers, false);
+            writeResponse(out, HttpURLConnection.HTTP_NOT_MODIFIED, headers, new byte[0]);
+            return true;
+        }
+
+        ArrayList<String> headers = new ArrayList<>();
+        for (int i = 0; i < fixture.headers.size(); i += 2) {
+            String name = fixture.headers.get(i);
+            String value = fixture.headers.get(i + 1);
+            if (isSkippedResponseHeader(name)) {
+                continue;
+            }
+            if ("Link".equalsIgnoreCase(name)) {
+                value = value.replace(UPSTREAM_URL,
+                        "http://" + getHostname() + ":" + getPort() + API_PREFIX);
+            }
+            headers.add(name);
+            headers.add(value);
+        }
+        addRateLimitHeaders(headers, true);
+        writeResponse(out, fixture.status, headers, fixture.body);
+        return true;
+    }
+
+    private FixtureStore.Fixture fetchUpstream(String path, Map<String, String> requestHeaders) {
+        HttpURLConnection conn = null;
+        InputStream in = null;
+        try {
+            conn = HttpTransport.open(UPSTREAM_URL + path);
+            for (String name : FORWARDED_REQUEST_HEADERS) {
+                String value = getHeader(requestHeaders, name);
+                if (value != null) {
+                    conn.setRequestProperty(name, value);
+                }
+            }
+
+            int status = conn.getResponseCode();
+            ArrayList<String> headers = new ArrayList<>();
+            for (Map.Entry<String, List<String>> entry : conn.getHeaderFields().entrySet()) {
+                // the status line is reported with a null key
+                if (entry.getKey() == null || isSkippedResponseHeader(entry.getKey())) {
+                    continue;
+                }
+                for (String value : entry.getValue()) {
+                    headers.add(entry.getKey());
+                    headers.add(value);
+                }
+            }
+
+            in = status >= HttpURLConnection.HTTP_BAD_REQUEST
+                    ? conn.getErrorStream() : conn.getInputStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if (in != null) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+            }
+            return new FixtureStore.Fixture(status, headers, body.toByteArray());
+        } catch (IOException e) {
+            Log.w(Constants.LOG_TAG, "Could not record fixture for " + path, e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignored
+                }
+            }
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    private void addRateLimitHeaders(List<String> headers, boolean consume) {
+        int remaining = consume
+                ? Math.max(0, mRemainingRequests.decrementAndGet()) : mRemainingRequests.get();
+        headers.add("X-RateLimit-Limit");
+        headers.add(String.valueOf(RATE_LIMIT));
+        headers.add("X-RateLimit-Remaining");
+        headers.add(String.valueOf(remaining));
+        headers.add("X-RateLimit-Reset");
+        headers.add(String.valueOf(mRateLimitReset));
+    }
+
+    private static void writeError(OutputStream out, int status, String reason,
+            String message) throws IOException {
+        ArrayList<String> headers = new ArrayList<>();
+        headers.add("Content-Type");
+        headers.add("application/json; charset=utf-8");
+        byte[] body = ("{\"message\":\"" + message.replace("\"", "\\\"") + "\"}")
+                .getBytes("UTF-8");
+        writeResponse(out, status, reason, headers, body);
+    }
+
+    private static void writeResponse(OutputStream out, int status,
+            List<String> headers, byte[] body) throws IOException {
+        writeResponse(out, status, getReasonPhrase(status), headers, body);
+    }
+
+    private static void writeResponse(OutputStream out, int status, String reason,
+            List<String> headers, byte[] body) throws IOException {
+        StringBuilder head = new StringBuilder();
+        head.append("HTTP/1.1 ").append(status).append(' ').append(reason).append("\r\n");
+        for (int i = 0; i < headers.size(); i += 2) {
+            head.append(headers.get(i)).append(": ").append(headers.get(i + 1)).append("\r\n");
+        }
+        head.append("Content-Length: ").append(body.length).append("\r\n");
+        head.append("\r\n");
+        out.write(head.toString().getBytes("ISO-8859-1"));
+        out.write(body);
+    }
+
+    private static String getReasonPhrase(int status) {
+        switch (status) {
+            case HttpURLConnection.HTTP_OK: return "OK";
+            case HttpURLConnection.HTTP_NO_CONTENT: return "No Content";
+            case HttpURLConnection.HTTP_NOT_MODIFIED: return "Not Modified";
+            case HttpURLConnection.HTTP_UNAUTHORIZED: return "Unauthorized";
+            case HttpURLConnection.HTTP_FORBIDDEN: return "Forbidden";
+            case HttpURLConnection.HTTP_NOT_FOUND: return "Not Found";
+            default: return "Status " + status;
+        }
+    }
+
+    private static boolean isSkippedResponseHeader(String name) {
+        for (String skipped : SKIPPED_RESPONSE_HEADERS) {
+            if (skipped.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String getHeader(Map<String, String> headers, String name) {
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static void skipRequestBody(InputStream in, String contentLength)
+            throws IOException {
+        if (contentLength == null) {
+            return;
+        }
+        long remaining;
+        try {
+            remaining = Long.parseLong(contentLength);
+        } catch (NumberFormatException e) {
+            return;
+        }
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                break;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() > 0 ? line.toString() : null;
+    }
+}
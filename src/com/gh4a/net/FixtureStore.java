@@ -0,0 +1,103 @@
+package com.gh4a.net;
+
+import com.gh4a.utils.DiskCache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recorded API responses, keyed by request path and Accept header.
+ * Used by {@link FixtureServer} to answer requests without network access.
+ */
+public class FixtureStore {
+    private static final int FIXTURE_VERSION = 1;
+
+    public static class Fixture {
+        public final int status;
+        // alternating header names and values
+        public final List<String> headers;
+        // as received, i.e. possibly compressed according to Content-Encoding
+        public final byte[] body;
+
+        public Fixture(int status, List<String> headers, byte[] body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public String getHeader(String name) {
+            for (int i = 0; i < headers.size(); i += 2) {
+                if (headers.get(i).equalsIgnoreCase(name)) {
+                    return headers.get(i + 1);
+                }
+            }
+            return null;
+        }
+    }
+
+    private final DiskCache mStore;
+
+    public FixtureStore(File directory) {
+        // fixtures are never evicted
+        mStore = new DiskCache(directory, Long.MAX_VALUE);
+    }
+
+    public static String makeKey(String path, String accept) {
+        return accept + " " + path;
+    }
+
+    public Fixture get(String key) {
+        byte[] data = mStore.get(key);
+        if (data == null) {
+            return null;
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            if (in.readInt() != FIXTURE_VERSION) {
+                return null;
+            }
+            int status = in.readInt();
+            int headerCount = in.readInt();
+            ArrayList<String> headers = new ArrayList<>(headerCount * 2);
+            for (int i = 0; i < headerCount * 2; i++) {
+                headers.add(in.readUTF());
+            }
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new Fixture(status, headers, body);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public void put(String key, Fixture fixture) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(fixture.body.length + 1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(FIXTURE_VERSION);
+            out.writeInt(fixture.status);
+            out.writeInt(fixture.headers.size() / 2);
+            for (String header : fixture.headers) {
+                out.writeUTF(header);
+            }
+            out.writeInt(fixture.body.length);
+            out.write(fixture.body);
+            out.flush();
+        } catch (IOException e) {
+            // can't happen for in-memory streams
+            return;
+        }
+        mStore.put(key, bytes.toByteArray());
+    }
+
+    public void clear() {
+        mStore.clear();
+    }
+}
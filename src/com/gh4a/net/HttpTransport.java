@@ -0,0 +1,89 @@
+package com.gh4a.net;
+
+import android.util.Log;
+
+import com.gh4a.Constants;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+
+import org.eclipse.egit.github.core.okhttp.OkHttpProvider;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * Central place for opening HTTP connections. All API clients and the
+ * other network call sites (avatars, images, feeds) go through here, so they
+ * share one connection pool with keep-alive and one TLS session cache.
+ * Note that connections only go back to the pool after their response
+ * stream was closed, so callers must always close it.
+ */
+public class HttpTransport {
+    public interface ConnectionFactory {
+        HttpURLConnection open(URL url) throws IOException;
+    }
+
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_DURATION_MS = 5 * 60 * 1000;
+    private static final int CONNECT_TIMEOUT = 20; /* seconds */
+    private static final int READ_TIMEOUT = 30; /* seconds */
+
+    private static ConnectionFactory sFactory;
+
+    public static synchronized ConnectionFactory getConnectionFactory() {
+        if (sFactory == null) {
+            sFactory = new OkHttpConnectionFactory(createOkHttpClient());
+        }
+        return sFactory;
+    }
+
+    public static synchronized void setConnectionFactory(ConnectionFactory factory) {
+        sFactory = factory;
+    }
+
+    public static HttpURLConnection open(URL url) throws IOException {
+        return getConnectionFactory().open(url);
+    }
+
+    public static HttpURLConnection open(String url) throws IOException {
+        return open(new URL(url));
+    }
+
+    private static OkHttpClient createOkHttpClient() {
+        // the egit library uses this instance internally, so configure it
+        // instead of creating our own to make sure all requests share the pool
+        OkHttpClient client = OkHttpProvider.getOkHttpClient();
+        client.setConnectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION_MS));
+        client.setConnectTimeout(CONNECT_TIMEOUT, TimeUnit.SECONDS);
+        client.setReadTimeout(READ_TIMEOUT, TimeUnit.SECONDS);
+
+        // use a single SSL context, so TLS sessions can be resumed
+        try {
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, null, null);
+            client.setSslSocketFactory(sslContext.getSocketFactory());
+        } catch (GeneralSecurityException e) {
+            Log.w(Constants.LOG_TAG, "Could not create SSL context, using default", e);
+        }
+
+        return client;
+    }
+
+    private static class OkHttpConnectionFactory implements ConnectionFactory {
+        private final OkHttpClient mClient;
+
+        public OkHttpConnectionFactory(OkHttpClient client) {
+            mClient = client;
+        }
+
+        @Override
+        public HttpURLConnection open(URL url) throws IOException {
+            return mClient.open(url);
+        }
+    }
+}
@@ -0,0 +1,519 @@
+package com.gh4a.net;
+
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import org.eclipse.egit.github.core.Issue;
+import org.eclipse.egit.github.core.Label;
+import org.eclipse.egit.github.core.Milestone;
+import org.eclipse.egit.github.core.Permissions;
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.User;
+import org.eclipse.egit.github.core.UserPlan;
+import org.eclipse.egit.github.core.client.DateFormatter;
+import org.eclipse.egit.github.core.event.CommitCommentPayload;
+import org.eclipse.egit.github.core.event.CreatePayload;
+import org.eclipse.egit.github.core.event.DeletePayload;
+import org.eclipse.egit.github.core.event.DownloadPayload;
+import org.eclipse.egit.github.core.event.Event;
+import org.eclipse.egit.github.core.event.EventPayload;
+import org.eclipse.egit.github.core.event.EventRepository;
+import org.eclipse.egit.github.core.event.FollowPayload;
+import org.eclipse.egit.github.core.event.ForkApplyPayload;
+import org.eclipse.egit.github.core.event.ForkPayload;
+import org.eclipse.egit.github.core.event.GistPayload;
+import org.eclipse.egit.github.core.event.GollumPayload;
+import org.eclipse.egit.github.core.event.IssueCommentPayload;
+import org.eclipse.egit.github.core.event.IssuesPayload;
+import org.eclipse.egit.github.core.event.MemberPayload;
+import org.eclipse.egit.github.core.event.PublicPayload;
+import org.eclipse.egit.github.core.event.PullRequestPayload;
+import org.eclipse.egit.github.core.event.PullRequestReviewCommentPayload;
+import org.eclipse.egit.github.core.event.PushPayload;
+import org.eclipse.egit.github.core.event.ReleasePayload;
+import org.eclipse.egit.github.core.event.TeamAddPayload;
+import org.eclipse.egit.github.core.event.WatchPayload;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Hand written streaming deserializers for the model types that make up
+ * most of the list responses (events, issues, repositories and users).
+ * They read straight from the JsonReader without the reflection and
+ * intermediate JSON trees the default adapters need.
+ * Serialization is left to the default adapters.
+ */
+public class ModelTypeAdapterFactory implements TypeAdapterFactory {
+    private static final HashMap<String, Class<? extends EventPayload>> PAYLOAD_TYPES =
+            new HashMap<>();
+    static {
+        PAYLOAD_TYPES.put(Event.TYPE_COMMIT_COMMENT, CommitCommentPayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_CREATE, CreatePayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_DELETE, DeletePayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_DOWNLOAD, DownloadPayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_FOLLOW, FollowPayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_FORK, ForkPayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_FORK_APPLY, ForkApplyPayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_GIST, GistPayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_GOLLUM, GollumPayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_ISSUE_COMMENT, IssueCommentPayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_ISSUES, IssuesPayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_MEMBER, MemberPayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_PUBLIC, PublicPayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_PULL_REQUEST, PullRequestPayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_PULL_REQUEST_REVIEW_COMMENT,
+                PullRequestReviewCommentPayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_PUSH, PushPayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_RELEASE, ReleasePayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_TEAM_ADD, TeamAddPayload.class);
+        PAYLOAD_TYPES.put(Event.TYPE_WATCH, WatchPayload.class);
+    }
+
+    private static Gson sGson;
+
+    /**
+     * Returns a Gson instance configured like the one of the egit library
+     * (see GsonUtils), with the streaming adapters added.
+     */
+    public static synchronized Gson getGson() {
+        if (sGson == null) {
+            sGson = new GsonBuilder()
+                    .registerTypeAdapter(Date.class, new DateFormatter())
+                    .registerTypeAdapterFactory(new ModelTypeAdapterFactory())
+                    .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                    .serializeNulls()
+                    .create();
+        }
+        return sGson;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+        if (rawType == User.class) {
+            return (TypeAdapter<T>) new UserAdapter(gson, gson.getDelegateAdapter(this, type));
+        } else if (rawType == Repository.class) {
+            return (TypeAdapter<T>) new RepositoryAdapter(gson, gson.getDelegateAdapter(this, type));
+        } else if (rawType == Issue.class) {
+            return (TypeAdapter<T>) new IssueAdapter(gson, gson.getDelegateAdapter(this, type));
+        } else if (rawType == Event.class) {
+            return (TypeAdapter<T>) new EventAdapter(gson, gson.getDelegateAdapter(this, type));
+        }
+        return null;
+    }
+
+    private abstract static class ModelAdapter<T> extends TypeAdapter<T> {
+        protected final Gson mGson;
+        private final TypeAdapter<T> mDelegate;
+        private TypeAdapter<Date> mDateAdapter;
+
+        @SuppressWarnings("unchecked")
+        public ModelAdapter(Gson gson, TypeAdapter<?> delegate) {
+            mGson = gson;
+            mDelegate = (TypeAdapter<T>) delegate;
+        }
+
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            mDelegate.write(out, value);
+        }
+
+        @Override
+        public T read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            T result = createInstance();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    // keep the default value, like the reflective adapter does
+                    in.nextNull();
+                } else if (!readField(in, name, result)) {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return result;
+        }
+
+        protected abstract T createInstance();
+        protected abstract boolean readField(JsonReader in, String name, T result)
+                throws IOException;
+
+        protected Date readDate(JsonReader in) throws IOException {
+            String value = in.nextString();
+            Date date = parseIsoDate(value);
+            if (date != null) {
+                return date;
+            }
+            // not in the common format, let the library's formatter handle it
+            if (mDateAdapter == null) {
+                mDateAdapter = mGson.getAdapter(Date.class);
+            }
+            return mDateAdapter.fromJsonTree(new JsonPrimitive(value));
+        }
+    }
+
+    private static class UserAdapter extends ModelAdapter<User> {
+        private TypeAdapter<UserPlan> mPlanAdapter;
+
+        public UserAdapter(Gson gson, TypeAdapter<?> delegate) {
+            super(gson, delegate);
+        }
+
+        @Override
+        protected User createInstance() {
+            return new User();
+        }
+
+        @Override
+        protected boolean readField(JsonReader in, String name, User user) throws IOException {
+            switch (name) {
+                case "login": user.setLogin(in.nextString()); break;
+                case "id": user.setId(in.nextInt()); break;
+                case "avatar_url": user.setAvatarUrl(in.nextString()); break;
+                case "gravatar_id": user.setGravatarId(in.nextString()); break;
+                case "url": user.setUrl(in.nextString()); break;
+                case "html_url": user.setHtmlUrl(in.nextString()); break;
+                case "type": user.setType(in.nextString()); break;
+                case "name": user.setName(in.nextString()); break;
+                case "company": user.setCompany(in.nextString()); break;
+                case "blog": user.setBlog(in.nextString()); break;
+                case "location": user.setLocation(in.nextString()); break;
+                case "email": user.setEmail(in.nextString()); break;
+                case "bio": user.setBio(in.nextString()); break;
+                case "hireable": user.setHireable(in.nextBoolean()); break;
+                case "public_repos": user.setPublicRepos(in.nextInt()); break;
+                case "public_gists": user.setPublicGists(in.nextInt()); break;
+                case "followers": user.setFollowers(in.nextInt()); break;
+                case "following": user.setFollowing(in.nextInt()); break;
+                case "created_at": user.setCreatedAt(readDate(in)); break;
+                case "total_private_repos": user.setTotalPrivateRepos(in.nextInt()); break;
+                case "owned_private_repos": user.setOwnedPrivateRepos(in.nextInt()); break;
+                case "private_gists": user.setPrivateGists(in.nextInt()); break;
+                case "disk_usage": user.setDiskUsage(in.nextInt()); break;
+                case "collaborators": user.setCollaborators(in.nextInt()); break;
+                case "plan":
+                    if (mPlanAdapter == null) {
+                        mPlanAdapter = mGson.getAdapter(UserPlan.class);
+                    }
+                    user.setPlan(mPlanAdapter.read(in));
+                    break;
+                default: return false;
+            }
+            return true;
+        }
+    }
+
+    private static class RepositoryAdapter extends ModelAdapter<Repository> {
+        private TypeAdapter<User> mUserAdapter;
+        private TypeAdapter<Permissions> mPermissionsAdapter;
+        private static Field sPermissionsField;
+
+        public RepositoryAdapter(Gson gson, TypeAdapter<?> delegate) {
+            super(gson, delegate);
+        }
+
+        @Override
+        protected Repository createInstance() {
+            return new Repository();
+        }
+
+        @Override
+        protected boolean readField(JsonReader in, String name, Repository repo)
+                throws IOException {
+            switch (name) {
+                case "id": repo.setId(in.nextLong()); break;
+                case "name": repo.setName(in.nextString()); break;
+                case "owner":
+                    if (mUserAdapter == null) {
+                        mUserAdapter = mGson.getAdapter(User.class);
+                    }
+                    repo.setOwner(mUserAdapter.read(in));
+                    break;
+                case "private": repo.setPrivate(in.nextBoolean()); break;
+                case "html_url": repo.setHtmlUrl(in.nextString()); break;
+                case "description": repo.setDescription(in.nextString()); break;
+                case "fork": repo.setFork(in.nextBoolean()); break;
+                case "url": repo.setUrl(in.nextString()); break;
+                case "created_at": repo.setCreatedAt(readDate(in)); break;
+                case "updated_at": repo.setUpdatedAt(readDate(in)); break;
+                case "pushed_at": repo.setPushedAt(readDate(in)); break;
+                case "git_url": repo.setGitUrl(in.nextString()); break;
+                case "ssh_url": repo.setSshUrl(in.nextString()); break;
+                case "clone_url": repo.setCloneUrl(in.nextString()); break;
+                case "svn_url": repo.setSvnUrl(in.nextString()); break;
+                case "mirror_url": repo.setMirrorUrl(in.nextString()); break;
+                case "homepage": repo.setHomepage(in.nextString()); break;
+                case "size": repo.setSize(in.nextInt()); break;
+                case "watchers": repo.setWatchers(in.nextInt()); break;
+                case "language": repo.setLanguage(in.nextString()); break;
+                case "has_issues": repo.setHasIssues(in.nextBoolean()); break;
+                case "has_downloads": repo.setHasDownloads(in.nextBoolean()); break;
+                case "has_wiki": repo.setHasWiki(in.nextBoolean()); break;
+                case "forks": repo.setForks(in.nextInt()); break;
+                case "open_issues": repo.setOpenIssues(in.nextInt()); break;
+                case "default_branch": repo.setDefaultBranch(in.nextString()); break;
+                case "parent": repo.setParent(read(in)); break;
+                case "source": repo.setSource(read(in)); break;
+                case "permissions":
+                    if (mPermissionsAdapter == null) {
+                        mPermissionsAdapter = mGson.getAdapter(Permissions.class);
+                    }
+                    setPermissions(repo, mPermissionsAdapter.read(in));
+                    break;
+                default: return false;
+            }
+            return true;
+        }
+
+        // Repository has no setter for the permissions
+        private void setPermissions(Repository repo, Permissions permissions) {
+            try {
+                if (sPermissionsField == null) {
+                    Field field = Repository.class.getDeclaredField("permissions");
+                    field.setAccessible(true);
+                    sPermissionsField = field;
+                }
+                sPermissionsField.set(repo, permissions);
+            } catch (NoSuchFieldException | IllegalAccessException e) {
+                throw new JsonParseException(e);
+            }
+        }
+    }
+
+    private static class IssueAdapter extends ModelAdapter<Issue> {
+        private TypeAdapter<User> mUserAdapter;
+        private TypeAdapter<List<Label>> mLabelListAdapter;
+        private TypeAdapter<Milestone> mMilestoneAdapter;
+        private TypeAdapter<PullRequest> mPullRequestAdapter;
+
+        public IssueAdapter(Gson gson, TypeAdapter<?> delegate) {
+            super(gson, delegate);
+        }
+
+        @Override
+        protected Issue createInstance() {
+            return new Issue();
+        }
+
+        @Override
+        protected boolean readField(JsonReader in, String name, Issue issue) throws IOException {
+            switch (name) {
+                case "id": issue.setId(in.nextLong()); break;
+                case "url": issue.setUrl(in.nextString()); break;
+                case "html_url": issue.setHtmlUrl(in.nextString()); break;
+                case "number": issue.setNumber(in.nextInt()); break;
+                case "state": issue.setState(in.nextString()); break;
+                case "title": issue.setTitle(in.nextString()); break;
+                case "body": issue.setBody(in.nextString()); break;
+                case "body_html": issue.setBodyHtml(in.nextString()); break;
+                case "body_text": issue.setBodyText(in.nextString()); break;
+                case "user": issue.setUser(readUser(in)); break;
+                case "assignee": issue.setAssignee(readUser(in)); break;
+                case "closed_by": issue.setClosedBy(readUser(in)); break;
+                case "locked": issue.setLocked(in.nextBoolean()); break;
+                case "comments": issue.setComments(in.nextInt()); break;
+                case "closed_at": issue.setClosedAt(readDate(in)); break;
+                case "created_at": issue.setCreatedAt(readDate(in)); break;
+                case "updated_at": issue.setUpdatedAt(readDate(in)); break;
+                case "labels":
+                    if (mLabelListAdapter == null) {
+                        mLabelListAdapter = mGson.getAdapter(new TypeToken<List<Label>>() {});
+                    }
+                    issue.setLabels(mLabelListAdapter.read(in));
+                    break;
+                case "milestone":
+                    if (mMilestoneAdapter == null) {
+                        mMilestoneAdapter = mGson.getAdapter(Milestone.class);
+                    }
+                    issue.setMilestone(mMilestoneAdapter.read(in));
+                    break;
+                case "pull_request":
+                    if (mPullRequestAdapter == null) {
+                        mPullRequestAdapter = mGson.getAdapter(PullRequest.class);
+                    }
+                    issue.setPullRequest(mPullRequestAdapter.read(in));
+                    break;
+                default: return false;
+            }
+            return true;
+        }
+
+        private User readUser(JsonReader in) throws IOException {
+            if (mUserAdapter == null) {
+                mUserAdapter = mGson.getAdapter(User.class);
+            }
+            return mUserAdapter.read(in);
+        }
+    }
+
+    private static class EventAdapter extends ModelAdapter<Event> {
+        private TypeAdapter<User> mUserAdapter;
+        private TypeAdapter<JsonElement> mElementAdapter;
+
+        public EventAdapter(Gson gson, TypeAdapter<?> delegate) {
+            super(gson, delegate);
+        }
+
+        // Same as the generic version, except for a payload that comes before
+        // the event type. It's kept as a tree until the type is known. This
+        // state is local to the call, as the adapter is shared between threads.
+        @Override
+        public Event read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+
+            Event event = createInstance();
+            JsonElement pendingPayload = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                } else if ("payload".equals(name) && event.getType() == null) {
+                    if (mElementAdapter == null) {
+                        mElementAdapter = mGson.getAdapter(JsonElement.class);
+                    }
+                    pendingPayload = mElementAdapter.read(in);
+                } else if (!readField(in, name, event)) {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+
+            if (pendingPayload != null) {
+                event.setPayload(mGson.fromJson(pendingPayload, getPayloadType(event)));
+            }
+            return event;
+        }
+
+        @Override
+        protected Event createInstance() {
+            return new Event();
+        }
+
+        @Override
+        protected boolean readField(JsonReader in, String name, Event event) throws IOException {
+            switch (name) {
+                case "id": event.setId(in.nextString()); break;
+                case "type": event.setType(in.nextString()); break;
+                case "public": event.setPublic(in.nextBoolean()); break;
+                case "created_at": event.setCreatedAt(readDate(in)); break;
+                case "actor": event.setActor(readUser(in)); break;
+                case "org": event.setOrg(readUser(in)); break;
+                case "repo": event.setRepo(readRepo(in)); break;
+                case "payload":
+                    // only called once the type is known, see read()
+                    event.setPayload(mGson.getAdapter(getPayloadType(event)).read(in));
+                    break;
+                default: return false;
+            }
+            return true;
+        }
+
+        private Class<? extends EventPayload> getPayloadType(Event event) {
+            Class<? extends EventPayload> type = PAYLOAD_TYPES.get(event.getType());
+            return type != null ? type : EventPayload.class;
+        }
+
+        private User readUser(JsonReader in) throws IOException {
+            if (mUserAdapter == null) {
+                mUserAdapter = mGson.getAdapter(User.class);
+            }
+            return mUserAdapter.read(in);
+        }
+
+        private EventRepository readRepo(JsonReader in) throws IOException {
+            EventRepository repo = new EventRepository();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                } else if ("id".equals(name)) {
+                    repo.setId(in.nextLong());
+                } else if ("name".equals(name)) {
+                    repo.setName(in.nextString());
+                } else if ("url".equals(name)) {
+                    repo.setUrl(in.nextString());
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return repo;
+        }
+    }
+
+    /**
+     * Parses dates in the 'yyyy-MM-ddTHH:mm:ssZ' format used by the API
+     * without going through SimpleDateFormat.
+     *
+     * @return the parsed date or null if the date is in a different format
+     */
+    static Date parseIsoDate(String value) {
+        if (value.length() != 20 || value.charAt(4) != '-' || value.charAt(7) != '-'
+                || value.charAt(10) != 'T' || value.charAt(13) != ':'
+                || value.charAt(16) != ':' || value.charAt(19) != 'Z') {
+            return null;
+        }
+
+        int year = parseDigits(value, 0, 4);
+        int month = parseDigits(value, 5, 7);
+        int day = parseDigits(value, 8, 10);
+        int hour = parseDigits(value, 11, 13);
+        int minute = parseDigits(value, 14, 16);
+        int second = parseDigits(value, 17, 19);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 60) {
+            return null;
+        }
+
+        // days since epoch, see http://howardhinnant.github.io/date_algorithms.html
+        int y = month <= 2 ? year - 1 : year;
+        int era = y / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        long days = era * 146097L + dayOfEra - 719468;
+
+        long seconds = ((days * 24 + hour) * 60 + minute) * 60 + second;
+        return new Date(seconds * 1000);
+    }
+
+    private static int parseDigits(String value, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+}
@@ -0,0 +1,170 @@
+package com.gh4a.net;
+
+import android.net.Uri;
+
+import org.eclipse.egit.github.core.IResourceProvider;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.IGitHubConstants;
+import org.eclipse.egit.github.core.client.PagedRequest;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fetches all pages of a list. The first page tells the number of the last
+ * one via its Link header, so the remaining pages are requested concurrently
+ * and put back together in order afterwards. Lists without that information
+ * are walked page by page.
+ *
+ * @see RequestBatch
+ */
+public class ParallelPageFetcher {
+    private static class Page<V> {
+        final Collection<V> items;
+        final String next;
+        final String last;
+
+        Page(Collection<V> items, String next, String last) {
+            this.items = items;
+            this.next = next;
+            this.last = last;
+        }
+    }
+
+    private ParallelPageFetcher() {
+    }
+
+    /**
+     * Fetches all items of the list described by request, whose page number
+     * is ignored.
+     */
+    public static <V> List<V> getAll(final GitHubClient client, final PagedRequest<V> request)
+            throws IOException {
+        Page<V> firstPage = fetchPage(client, request, PagedRequest.PAGE_FIRST);
+        ArrayList<V> result = new ArrayList<>(firstPage.items);
+
+        int lastPage = parsePageNumber(firstPage.last);
+        if (lastPage > PagedRequest.PAGE_FIRST) {
+            RequestBatch<Page<V>> batch = new RequestBatch<>();
+            for (int page = PagedRequest.PAGE_FIRST + 1; page <= lastPage; page++) {
+                final int pageNumber = page;
+                batch.submit(new RequestBatch.Request<Page<V>>() {
+                    @Override
+                    public Page<V> execute() throws IOException {
+                        return fetchPage(client, request, pageNumber);
+                    }
+                });
+            }
+            for (Page<V> page : batch.getResults()) {
+                result.addAll(page.items);
+            }
+        } else {
+            Page<V> page = firstPage;
+            int pageNumber = PagedRequest.PAGE_FIRST;
+            while (page.next != null) {
+                page = fetchPage(client, request, ++pageNumber);
+                result.addAll(page.items);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fetches all items of a list belonging to a repository, for lists the
+     * services don't offer page iterators for.
+     *
+     * @param segment path of the list below the repository, e.g.
+     *                {@link IGitHubConstants#SEGMENT_BRANCHES}
+     * @param listType type of a page of items, e.g. List&lt;RepositoryBranch&gt;
+     */
+    public static <V> List<V> getAllForRepository(GitHubClient client, RepositoryId repoId,
+            String segment, Type listType) throws IOException {
+        StringBuilder uri = new StringBuilder(IGitHubConstants.SEGMENT_REPOS);
+        uri.append('/').append(Uri.encode(repoId.getOwner()));
+        uri.append('/').append(Uri.encode(repoId.getName()));
+        uri.append(segment);
+
+        PagedRequest<V> request = new PagedRequest<>();
+        request.setUri(uri);
+        request.setType(listType);
+        return getAll(client, request);
+    }
+
+    /**
+     * Fetches a single page of the list described by request, whose page
+     * number is ignored.
+     */
+    public static <V> Collection<V> getPage(GitHubClient client, PagedRequest<V> request,
+            int page) throws IOException {
+        return fetchPage(client, request, page).items;
+    }
+
+    /**
+     * Determines the number of items of a list without fetching it: with a
+     * page size of 1, the number of the last page is the number of items.
+     */
+    public static <V> int getItemCount(GitHubClient client, PagedRequest<V> request)
+            throws IOException {
+        Page<V> page = fetchPage(client, request, PagedRequest.PAGE_FIRST, 1);
+        int lastPage = parsePageNumber(page.last);
+        return lastPage > 0 ? lastPage : page.items.size();
+    }
+
+    private static <V> Page<V> fetchPage(GitHubClient client, PagedRequest<V> template,
+            int page) throws IOException {
+        return fetchPage(client, template, page, template.getPageSize());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Page<V> fetchPage(GitHubClient client, PagedRequest<V> template,
+            int page, int pageSize) throws IOException {
+        PagedRequest<V> request = new PagedRequest<>(page, pageSize);
+        request.setUri(template.getUri());
+        request.setParams(template.getParams());
+        request.setType(template.getType());
+        request.setArrayType(template.getArrayType());
+        request.setResponseContentType(template.getResponseContentType());
+
+        GitHubResponse response = client.get(request);
+
+        Object body = response.getBody();
+        Collection<V> items;
+        if (body instanceof Collection) {
+            items = (Collection<V>) body;
+        } else if (body instanceof IResourceProvider) {
+            items = ((IResourceProvider<V>) body).getResources();
+        } else if (body != null) {
+            items = Collections.singletonList((V) body);
+        } else {
+            items = Collections.emptyList();
+        }
+        return new Page<>(items, response.getNext(), response.getLast());
+    }
+
+    // same as PageIterator.parsePageNumber(), which isn't accessible
+    private static int parsePageNumber(String uri) {
+        if (uri == null || uri.isEmpty()) {
+            return -1;
+        }
+        int queryStart = uri.indexOf('?');
+        if (queryStart < 0) {
+            return -1;
+        }
+        for (String param : uri.substring(queryStart + 1).split("&")) {
+            if (param.startsWith("page=")) {
+                try {
+                    return Integer.parseInt(param.substring(5));
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,96 @@
+package com.gh4a.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream that keeps a copy of all bytes read through it, so a response
+ * can be parsed while it arrives and still be stored afterwards.
+ * Closing this stream doesn't close the underlying stream, to allow reading
+ * the remainder (e.g. a gzip trailer) after a parser closed its reader;
+ * use {@link #closeSource()} for that.
+ */
+public class RecordingInputStream extends FilterInputStream {
+    private final ByteArrayOutputStream mRecording;
+    private long mByteCount;
+
+    public RecordingInputStream(InputStream in, boolean record) {
+        super(in);
+        mRecording = record ? new ByteArrayOutputStream(8192) : null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            mByteCount++;
+            if (mRecording != null) {
+                mRecording.write(b);
+            }
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        int read = super.read(buffer, offset, count);
+        if (read > 0) {
+            mByteCount += read;
+            if (mRecording != null) {
+                mRecording.write(buffer, offset, read);
+            }
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        // skipped bytes need to be recorded as well
+        byte[] buffer = new byte[(int) Math.min(count, 8192)];
+        long skipped = 0;
+        while (skipped < count) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, count - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Reads the rest of the underlying stream.
+     */
+    public void drain() throws IOException {
+        byte[] buffer = new byte[8192];
+        while (read(buffer, 0, buffer.length) >= 0) {
+            // keep reading
+        }
+    }
+
+    public void closeSource() throws IOException {
+        in.close();
+    }
+
+    public long getByteCount() {
+        return mByteCount;
+    }
+
+    /**
+     * @return the bytes read so far, or null if recording was disabled
+     */
+    public byte[] getRecordedBytes() {
+        return mRecording != null ? mRecording.toByteArray() : null;
+    }
+}
@@ -0,0 +1,135 @@
+package com.gh4a.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs independent requests concurrently, e.g. the different parts of a
+ * screen that would otherwise be requested one after another. Each request
+ * still is a separate API call, they're only issued at the same time, so
+ * the screen waits for the slowest of them instead of for all in turn.
+ *
+ * The requests use the cache mode and request priority of the thread that
+ * created the batch, and stale cache hits are reported to that thread's
+ * {@link CachePolicy} when collecting the results.
+ */
+public class RequestBatch<V> {
+    private static final int MAX_PARALLEL_REQUESTS = 4;
+
+    private static final ExecutorService sExecutor =
+            Executors.newFixedThreadPool(MAX_PARALLEL_REQUESTS);
+
+    // set for the pool threads, batches created there run their requests
+    // directly, as waiting for other pool threads could deadlock
+    private static final ThreadLocal<Boolean> sIsWorker = new ThreadLocal<>();
+
+    public interface Request<V> {
+        V execute() throws IOException;
+    }
+
+    private static class BatchCall<V> implements Callable<V> {
+        private final Request<V> mRequest;
+        private final int mMode;
+        private final int mPriority;
+        volatile boolean mServedStale;
+
+        BatchCall(Request<V> request, int mode, int priority) {
+            mRequest = request;
+            mMode = mode;
+            mPriority = priority;
+        }
+
+        @Override
+        public V call() throws IOException {
+            if (sIsWorker.get() != null) {
+                // the calling thread is already set up
+                return mRequest.execute();
+            }
+            sIsWorker.set(true);
+            CachePolicy policy = CachePolicy.begin(mMode);
+            RequestScheduler.setThreadPriority(mPriority);
+            try {
+                V result = mRequest.execute();
+                mServedStale = policy.hasServedStaleResponse();
+                return result;
+            } finally {
+                RequestScheduler.resetThreadPriority();
+                CachePolicy.end();
+                sIsWorker.remove();
+            }
+        }
+    }
+
+    private final int mMode;
+    private final int mPriority;
+    private final ArrayList<BatchCall<V>> mCalls = new ArrayList<>();
+    private final ArrayList<FutureTask<V>> mTasks = new ArrayList<>();
+
+    public RequestBatch() {
+        mMode = CachePolicy.getCurrentMode();
+        mPriority = RequestScheduler.getThreadPriority();
+    }
+
+    public void submit(Request<V> request) {
+        BatchCall<V> call = new BatchCall<>(request, mMode, mPriority);
+        FutureTask<V> task = new FutureTask<>(call);
+        mCalls.add(call);
+        mTasks.add(task);
+
+        if (sIsWorker.get() != null) {
+            task.run();
+        } else {
+            sExecutor.execute(task);
+        }
+    }
+
+    /**
+     * Waits for all requests and returns their results in the order they
+     * were submitted. If a request fails, the requests that didn't start
+     * yet are cancelled and its exception is rethrown.
+     */
+    public List<V> getResults() throws IOException {
+        ArrayList<V> results = new ArrayList<>(mTasks.size());
+        boolean servedStale = false;
+        try {
+            for (int i = 0; i < mTasks.size(); i++) {
+                results.add(waitFor(mTasks.get(i)));
+                servedStale |= mCalls.get(i).mServedStale;
+            }
+        } finally {
+            // no-op for finished requests
+            for (FutureTask<V> task : mTasks) {
+                task.cancel(false);
+            }
+        }
+
+        if (servedStale) {
+            CachePolicy.reportStaleResponse();
+        }
+        return results;
+    }
+
+    private static <V> V waitFor(FutureTask<V> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for request");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.gh4a.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Makes concurrent calls with the same key share a single execution:
+ * the first caller runs the call, everybody else arriving while it is
+ * still running waits for and receives its result. The leader hands out
+ * the copies for the others before returning, so its caller is free to
+ * modify the result.
+ */
+public class RequestCoalescer<K, V> {
+    public interface Call<V> {
+        V execute() throws IOException;
+        /**
+         * Creates the value passed to a caller that joined a running call.
+         * Used to hand out copies of mutable results.
+         */
+        V share(V result);
+    }
+
+    private static class InFlight<V> {
+        final CountDownLatch done = new CountDownLatch(1);
+        // number of callers waiting for the result, guarded by mInFlight
+        int followers;
+        // one shared result for each follower, guarded by itself
+        final ArrayList<V> shares = new ArrayList<>();
+        IOException ioError;
+        RuntimeException runtimeError;
+    }
+
+    private final HashMap<K, InFlight<V>> mInFlight = new HashMap<>();
+    private int mSharedCount;
+
+    public V execute(K key, Call<V> call) throws IOException {
+        InFlight<V> flight;
+        boolean leader = false;
+        synchronized (mInFlight) {
+            flight = mInFlight.get(key);
+            if (flight == null) {
+                flight = new InFlight<>();
+                mInFlight.put(key, flight);
+                leader = true;
+            } else {
+                flight.followers++;
+                mSharedCount++;
+            }
+        }
+
+        if (leader) {
+            V result = null;
+            boolean succeeded = false;
+            try {
+                result = call.execute();
+                succeeded = true;
+                return result;
+            } catch (IOException e) {
+                flight.ioError = e;
+                throw e;
+            } catch (RuntimeException e) {
+                flight.runtimeError = e;
+                throw e;
+            } finally {
+                int followers;
+                synchronized (mInFlight) {
+                    mInFlight.remove(key);
+                    followers = flight.followers;
+                }
+                if (succeeded) {
+                    // copies are made before anybody gets the result, the
+                    // caller may modify it right after we return
+                    try {
+                        synchronized (flight.shares) {
+                            for (int i = 0; i < followers; i++) {
+                                flight.shares.add(call.share(result));
+                            }
+                        }
+                    } catch (RuntimeException e) {
+                        flight.runtimeError = e;
+                    }
+                } else if (flight.ioError == null && flight.runtimeError == null) {
+                    // an Error, which is passed on to our caller only
+                    flight.runtimeError = new IllegalStateException("Shared call failed");
+                }
+                flight.done.countDown();
+            }
+        }
+
+        try {
+            flight.done.await();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        if (flight.ioError != null) {
+            throw flight.ioError;
+        }
+        if (flight.runtimeError != null) {
+            throw flight.runtimeError;
+        }
+        synchronized (flight.shares) {
+            return flight.shares.remove(flight.shares.size() - 1);
+        }
+    }
+
+    /**
+     * @return the number of calls that were answered by joining a running call
+     */
+    public int getSharedCount() {
+        synchronized (mInFlight) {
+            return mSharedCount;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.gh4a.net;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Collects per endpoint statistics about API requests (count, latency,
+ * transferred bytes, status codes and cache outcome). Endpoints are
+ * identified by their path template, e.g. /repos/{owner}/{repo}/issues.
+ */
+public class RequestMetrics {
+    public static final int OUTCOME_NONE = 0;
+    // response was fetched and stored in the cache
+    public static final int OUTCOME_MISS = 1;
+    // server answered 304, response was taken from the cache
+    public static final int OUTCOME_HIT = 2;
+    // joined an identical request that was already running
+    public static final int OUTCOME_SHARED = 3;
+    // taken from the cache without a request, as it was within its time to live
+    public static final int OUTCOME_FRESH = 4;
+    // outdated response taken from the cache, e.g. because the server wasn't reachable
+    public static final int OUTCOME_STALE = 5;
+    private static final String[] OUTCOME_NAMES = new String[] {
+        "uncached", "miss", "hit", "shared", "fresh", "stale"
+    };
+
+    // status code used for requests that failed without a response
+    public static final int STATUS_NETWORK_ERROR = -1;
+
+    private static final long[] LATENCY_BUCKETS = new long[] {
+        50, 100, 250, 500, 1000, 2500, 5000, Long.MAX_VALUE
+    };
+
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("\\d+");
+    private static final Pattern SHA_PATTERN = Pattern.compile("[0-9a-fA-F]{40}");
+
+    public static class EndpointStats {
+        public final String template;
+        public int count;
+        public long totalLatency;
+        public long maxLatency;
+        public long totalBytes;
+        // retries after transient errors and the total time waited for them
+        public int retries;
+        public long totalRetryDelay;
+        public final int[] latencyHistogram = new int[LATENCY_BUCKETS.length];
+        public final int[] outcomes = new int[OUTCOME_NAMES.length];
+        public final TreeMap<Integer, Integer> statusCodes = new TreeMap<>();
+
+        private EndpointStats(String template) {
+            this.template = template;
+        }
+
+        private EndpointStats(EndpointStats other) {
+            this(other.template);
+            count = other.count;
+            totalLatency = other.totalLatency;
+            maxLatency = other.maxLatency;
+            totalBytes = other.totalBytes;
+            retries = other.retries;
+            totalRetryDelay = other.totalRetryDelay;
+            System.arraycopy(other.latencyHistogram, 0, latencyHistogram, 0,
+                    latencyHistogram.length);
+            System.arraycopy(other.outcomes, 0, outcomes, 0, outcomes.length);
+            statusCodes.putAll(other.statusCodes);
+        }
+    }
+
+    private static final RequestMetrics sInstance = new RequestMetrics();
+
+    private final HashMap<String, EndpointStats> mStats = new HashMap<>();
+    private long mStartTime = System.currentTimeMillis();
+
+    public static RequestMetrics getInstance() {
+        return sInstance;
+    }
+
+    public synchronized void record(String url, int status, long latency,
+            long bytes, int outcome) {
+        EndpointStats stats = getOrCreateStats(url);
+        stats.count++;
+        stats.totalLatency += latency;
+        stats.maxLatency = Math.max(stats.maxLatency, latency);
+        stats.totalBytes += bytes;
+        for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+            if (latency < LATENCY_BUCKETS[i]) {
+                stats.latencyHistogram[i]++;
+                break;
+            }
+        }
+        stats.outcomes[outcome]++;
+        Integer statusCount = stats.statusCodes.get(status);
+        stats.statusCodes.put(status, statusCount != null ? statusCount + 1 : 1);
+    }
+
+    /**
+     * Records that a failed request is retried after the given delay.
+     * The failed attempt itself is recorded via {@link #record}.
+     */
+    public synchronized void recordRetry(String url, long delay) {
+        EndpointStats stats = getOrCreateStats(url);
+        stats.retries++;
+        stats.totalRetryDelay += delay;
+    }
+
+    private EndpointStats getOrCreateStats(String url) {
+        String template = getEndpointTemplate(url);
+        EndpointStats stats = mStats.get(template);
+        if (stats == null) {
+            stats = new EndpointStats(template);
+            mStats.put(template, stats);
+        }
+        return stats;
+    }
+
+    /**
+     * @return a copy of the collected statistics, sorted by total latency
+     */
+    public synchronized ArrayList<EndpointStats> getStats() {
+        ArrayList<EndpointStats> result = new ArrayList<>();
+        for (EndpointStats stats : mStats.values()) {
+            result.add(new EndpointStats(stats));
+        }
+        Collections.sort(result, new Comparator<EndpointStats>() {
+            @Override
+            public int compare(EndpointStats lhs, EndpointStats rhs) {
+                return lhs.totalLatency > rhs.totalLatency
+                        ? -1 : (lhs.totalLatency == rhs.totalLatency ? 0 : 1);
+            }
+        });
+        return result;
+    }
+
+    public synchronized void reset() {
+        mStats.clear();
+        mStartTime = System.currentTimeMillis();
+    }
+
+    public String dump() {
+        StringWriter writer = new StringWriter();
+        try {
+            dump(writer);
+        } catch (IOException e) {
+            // can't happen for StringWriter
+        }
+        return writer.toString();
+    }
+
+    public void dump(Writer writer) throws IOException {
+        long startTime;
+        synchronized (this) {
+            startTime = mStartTime;
+        }
+        ArrayList<EndpointStats> allStats = getStats();
+        PrintWriter out = new PrintWriter(writer);
+
+        out.format(Locale.US, "Collected over %d s\n",
+                (System.currentTimeMillis() - startTime) / 1000);
+        for (EndpointStats stats : allStats) {
+            out.println();
+            out.println(stats.template);
+            out.format(Locale.US, "  requests: %d, bytes: %d\n", stats.count, stats.totalBytes);
+            if (stats.count > 0) {
+                out.format(Locale.US, "  latency: avg %d ms, max %d ms\n",
+                        stats.totalLatency / stats.count, stats.maxLatency);
+            }
+            if (stats.retries > 0) {
+                out.format(Locale.US, "  retries: %d, waited %d ms\n",
+                        stats.retries, stats.totalRetryDelay);
+            }
+
+            out.print("  histogram:");
+            long lowerBound = 0;
+            for (int i = 0; i < LATENCY_BUCKETS.length; i++) {
+                if (stats.latencyHistogram[i] == 0) {
+                    lowerBound = LATENCY_BUCKETS[i];
+                    continue;
+                }
+                if (LATENCY_BUCKETS[i] == Long.MAX_VALUE) {
+                    out.format(Locale.US, " >=%d: %d", lowerBound, stats.latencyHistogram[i]);
+                } else {
+                    out.format(Locale.US, " <%d: %d",
+                            LATENCY_BUCKETS[i], stats.latencyHistogram[i]);
+                }
+                lowerBound = LATENCY_BUCKETS[i];
+            }
+            out.println();
+
+            out.print("  status:");
+            for (Map.Entry<Integer, Integer> entry : stats.statusCodes.entrySet()) {
+                int status = entry.getKey();
+                out.format(Locale.US, " %s: %d",
+                        status == STATUS_NETWORK_ERROR ? "error" : String.valueOf(status),
+                        entry.getValue());
+            }
+            out.println();
+
+            out.print("  cache:");
+            for (int i = 0; i < OUTCOME_NAMES.length; i++) {
+                if (stats.outcomes[i] > 0) {
+                    out.format(Locale.US, " %s: %d", OUTCOME_NAMES[i], stats.outcomes[i]);
+                }
+            }
+            out.println();
+        }
+        out.flush();
+    }
+
+    /**
+     * Maps a request URL to its endpoint template by replacing user, repository
+     * and other names, as well as numbers and commit SHAs, by placeholders.
+     */
+    public static String getEndpointTemplate(String url) {
+        String path = url;
+        int schemeEnd = path.indexOf("://");
+        if (schemeEnd >= 0) {
+            int pathStart = path.indexOf('/', schemeEnd + 3);
+            path = pathStart >= 0 ? path.substring(pathStart) : "/";
+        }
+        int queryStart = path.indexOf('?');
+        if (queryStart >= 0) {
+            path = path.substring(0, queryStart);
+        }
+
+        String[] segments = path.split("/");
+        StringBuilder template = new StringBuilder();
+        for (int i = 1; i < segments.length; i++) {
+            String segment = segments[i];
+            String previous = segments[i - 1];
+            String placeholder = null;
+
+            if (i == 2 && previous.equals("repos")) {
+                placeholder = "{owner}";
+            } else if (i == 3 && segments[1].equals("repos")) {
+                placeholder = "{repo}";
+            } else if (i == 2 && (previous.equals("users") || previous.equals("orgs"))) {
+                placeholder = previous.equals("users") ? "{user}" : "{org}";
+            } else if (i == 2 && previous.equals("gists")) {
+                placeholder = "{id}";
+            } else if (previous.equals("contents") || previous.equals("readme")
+                    || previous.equals("refs")) {
+                // everything that follows is a file path or ref name
+                template.append(previous.equals("refs") ? "/{ref}" : "/{path}");
+                break;
+            } else if (previous.equals("branches") || previous.equals("labels")
+                    || previous.equals("tags") || previous.equals("collaborators")) {
+                placeholder = "{name}";
+            } else if (previous.equals("commits") || previous.equals("trees")
+                    || previous.equals("blobs") || previous.equals("statuses")) {
+                // these can be given a ref name instead of a SHA as well
+                placeholder = "{sha}";
+            } else if (previous.equals("compare")) {
+                placeholder = "{base...head}";
+            } else if (SHA_PATTERN.matcher(segment).matches()) {
+                placeholder = "{sha}";
+            } else if (NUMBER_PATTERN.matcher(segment).matches()) {
+                placeholder = "{number}";
+            }
+
+            template.append('/').append(placeholder != null ? placeholder : segment);
+        }
+        return template.length() > 0 ? template.toString() : "/";
+    }
+}
@@ -0,0 +1,236 @@
+package com.gh4a.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+/**
+ * Orders outgoing requests by priority and keeps background traffic from
+ * using up the API rate limit. Requests of the visible screen may always use
+ * all slots; pagination and prefetch requests get fewer slots as the
+ * remaining budget runs down and are refused once it is nearly exhausted.
+ *
+ * The priority is a property of the calling thread, see
+ * {@link #setThreadPriority(int)}. It can be raised while the thread's
+ * requests are waiting, see {@link #raisePriority}.
+ */
+public class RequestScheduler {
+    public static final int PRIORITY_FOREGROUND = 0;
+    public static final int PRIORITY_PAGINATION = 1;
+    public static final int PRIORITY_PREFETCH = 2;
+
+    private static final int MAX_CONCURRENT_REQUESTS = 4;
+
+    /**
+     * Thrown if a request was refused to save the remaining rate limit
+     * budget for foreground requests.
+     */
+    public static class ThrottledException extends IOException {
+        public ThrottledException(int priority, Budget budget) {
+            super("Request of priority " + priority + " throttled, "
+                    + budget.remaining + " of " + budget.limit + " requests left");
+        }
+    }
+
+    public static class Budget {
+        public final int limit;
+        public final int remaining;
+        // time in ms (wall clock) when the budget is refilled, or 0 if unknown
+        public final long resetTime;
+
+        private Budget(int limit, int remaining, long resetTime) {
+            this.limit = limit;
+            this.remaining = remaining;
+            this.resetTime = resetTime;
+        }
+
+        public boolean isKnown() {
+            return limit > 0 && remaining >= 0;
+        }
+
+        /**
+         * @return the fraction of the budget that is left, 1 if unknown
+         */
+        public float getRemainingFraction() {
+            if (!isKnown() || (resetTime > 0 && System.currentTimeMillis() >= resetTime)) {
+                return 1F;
+            }
+            return (float) remaining / limit;
+        }
+    }
+
+    /**
+     * Priority of a thread's requests, which can be shared with other
+     * threads to raise it, e.g. when the user is now waiting for the page
+     * a prefetch is loading.
+     */
+    public static class Priority {
+        // guarded by the scheduler
+        private int mValue;
+
+        public Priority(int value) {
+            mValue = value;
+        }
+
+        public int get() {
+            synchronized (sInstance) {
+                return mValue;
+            }
+        }
+    }
+
+    private static class Ticket implements Comparable<Ticket> {
+        final Priority priority;
+        final long sequence;
+        final boolean usesBudget;
+
+        Ticket(Priority priority, long sequence, boolean usesBudget) {
+            this.priority = priority;
+            this.sequence = sequence;
+            this.usesBudget = usesBudget;
+        }
+
+        @Override
+        public int compareTo(Ticket other) {
+            if (priority.mValue != other.priority.mValue) {
+                return priority.mValue < other.priority.mValue ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    private static final RequestScheduler sInstance = new RequestScheduler();
+
+    private static final ThreadLocal<Priority> sThreadPriority = new ThreadLocal<Priority>() {
+        @Override
+        protected Priority initialValue() {
+            return new Priority(PRIORITY_FOREGROUND);
+        }
+    };
+
+    private final PriorityQueue<Ticket> mWaiting = new PriorityQueue<>();
+    private int mRunning;
+    private long mNextSequence;
+    private Budget mBudget = new Budget(0, -1, 0);
+
+    public static RequestScheduler getInstance() {
+        return sInstance;
+    }
+
+    public static void setThreadPriority(int priority) {
+        sThreadPriority.set(new Priority(priority));
+    }
+
+    public static void setThreadPriority(Priority priority) {
+        sThreadPriority.set(priority);
+    }
+
+    public static int getThreadPriority() {
+        return sThreadPriority.get().get();
+    }
+
+    public static void resetThreadPriority() {
+        sThreadPriority.remove();
+    }
+
+    public synchronized Budget getBudget() {
+        return mBudget;
+    }
+
+    public synchronized void updateBudget(int limit, int remaining, long resetTime) {
+        mBudget = new Budget(limit, remaining, resetTime);
+        notifyAll();
+    }
+
+    /**
+     * Waits for a request slot for the priority of the calling thread.
+     * Every successful call must be paired with a call to {@link #release()}.
+     */
+    public void acquire() throws IOException {
+        acquire(sThreadPriority.get(), true);
+    }
+
+    /**
+     * Waits for a request slot.
+     *
+     * @param usesBudget whether the request counts against the API rate limit.
+     *                   Requests that don't are only ordered, never refused.
+     */
+    public void acquire(int priority, boolean usesBudget) throws IOException {
+        acquire(new Priority(priority), usesBudget);
+    }
+
+    private synchronized void acquire(Priority priority, boolean usesBudget) throws IOException {
+        Ticket ticket = new Ticket(priority, mNextSequence++, usesBudget);
+        mWaiting.add(ticket);
+        try {
+            while (true) {
+                int allowed = getAllowedSlots(ticket);
+                if (allowed == 0) {
+                    throw new ThrottledException(priority.mValue, mBudget);
+                }
+                if (mWaiting.peek() == ticket && mRunning < allowed) {
+                    break;
+                }
+                wait();
+            }
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } finally {
+            mWaiting.remove(ticket);
+            // the next ticket in line might be able to run now
+            notifyAll();
+        }
+        mRunning++;
+    }
+
+    public synchronized void release() {
+        mRunning--;
+        notifyAll();
+    }
+
+    /**
+     * Raises the priority to the given one if it's lower. Waiting requests
+     * of that priority move up in the queue, later ones start with it.
+     */
+    public synchronized void raisePriority(Priority priority, int value) {
+        if (value >= priority.mValue) {
+            return;
+        }
+        // the queue doesn't notice changed ordering, so requeue the tickets
+        ArrayList<Ticket> affected = new ArrayList<>();
+        for (Ticket ticket : mWaiting) {
+            if (ticket.priority == priority) {
+                affected.add(ticket);
+            }
+        }
+        mWaiting.removeAll(affected);
+        priority.mValue = value;
+        mWaiting.addAll(affected);
+        notifyAll();
+    }
+
+    private int getAllowedSlots(Ticket ticket) {
+        int priority = ticket.priority.mValue;
+        if (priority == PRIORITY_FOREGROUND) {
+            return MAX_CONCURRENT_REQUESTS;
+        }
+        // always leave a slot for the visible screen
+        if (!ticket.usesBudget) {
+            return MAX_CONCURRENT_REQUESTS - 1;
+        }
+
+        float remaining = mBudget.getRemainingFraction();
+        if (priority == PRIORITY_PAGINATION) {
+            if (remaining > 0.2F) {
+                return MAX_CONCURRENT_REQUESTS - 1;
+            }
+            return remaining > 0.05F ? 1 : 0;
+        }
+        if (remaining > 0.5F) {
+            return MAX_CONCURRENT_REQUESTS - 1;
+        }
+        return remaining > 0.2F ? 1 : 0;
+    }
+}
@@ -0,0 +1,135 @@
+package com.gh4a.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.SocketException;
+import java.util.Random;
+
+/**
+ * Decides whether and when a failed GET request is retried. Retried are
+ * server errors (5xx), connections dropped by the server and requests
+ * refused by GitHub's abuse detection with a Retry-After header. The delay
+ * grows exponentially and is randomized, so that clients failing at the
+ * same time don't retry at the same time.
+ *
+ * Only to be used for idempotent requests.
+ */
+public class RetryPolicy {
+    private static final int MAX_RETRIES = 3;
+    private static final long BASE_DELAY = 500;
+    private static final long MAX_DELAY = 8000;
+    // longer waits are not worth it, the user gets an error instead
+    private static final long MAX_RETRY_AFTER = 30000;
+
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private static final Random sRandom = new Random();
+
+    /**
+     * Wraps an error response that may succeed if retried.
+     */
+    public static class RetryableException extends IOException {
+        private final IOException mError;
+        // in ms, or -1 if the server didn't specify it
+        private final long mRetryAfter;
+
+        private RetryableException(IOException error, long retryAfter) {
+            super(error.getMessage(), error);
+            mError = error;
+            mRetryAfter = retryAfter;
+        }
+
+        public IOException getError() {
+            return mError;
+        }
+    }
+
+    private RetryPolicy() {
+    }
+
+    /**
+     * Returns the exception to throw for an error response.
+     *
+     * @param retryAfter value of the Retry-After header, may be null
+     */
+    public static IOException wrapError(IOException error, int status, String retryAfter) {
+        long retryAfterMs = parseRetryAfter(retryAfter);
+        if (status >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+            return new RetryableException(error, retryAfterMs);
+        }
+        // secondary rate limit; the primary one comes without Retry-After
+        // and usually takes too long to reset anyway
+        if ((status == HttpURLConnection.HTTP_FORBIDDEN || status == HTTP_TOO_MANY_REQUESTS)
+                && retryAfterMs >= 0) {
+            return new RetryableException(error, retryAfterMs);
+        }
+        return error;
+    }
+
+    /**
+     * @return the exception to pass on to the caller after giving up
+     */
+    public static IOException unwrap(IOException error) {
+        return error instanceof RetryableException
+                ? ((RetryableException) error).getError() : error;
+    }
+
+    /**
+     * @param retries number of retries made so far
+     * @return delay in ms after which to retry, or -1 if the request
+     *         shouldn't be retried
+     */
+    public static long getRetryDelay(IOException error, int retries) {
+        if (retries >= MAX_RETRIES) {
+            return -1;
+        }
+
+        long retryAfter = -1;
+        if (error instanceof RetryableException) {
+            retryAfter = ((RetryableException) error).mRetryAfter;
+        } else if (!isConnectionReset(error)) {
+            return -1;
+        }
+        if (retryAfter > MAX_RETRY_AFTER) {
+            return -1;
+        }
+
+        long maxDelay = Math.min(MAX_DELAY, BASE_DELAY << retries);
+        long delay = maxDelay / 2 + (long) (sRandom.nextDouble() * maxDelay / 2);
+        return Math.max(delay, retryAfter);
+    }
+
+    public static void sleep(long delay) throws InterruptedIOException {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for retry");
+        }
+    }
+
+    private static boolean isConnectionReset(IOException error) {
+        // ConnectException means the server can't be reached at all (e.g.
+        // offline), which won't change within the next seconds
+        if (error instanceof ConnectException) {
+            return false;
+        }
+        // EOFException is what a reused connection the server closed results in
+        return error instanceof SocketException || error instanceof EOFException;
+    }
+
+    private static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(retryAfter.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            // HTTP dates aren't used by GitHub
+            return -1;
+        }
+    }
+}
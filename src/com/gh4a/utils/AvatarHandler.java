@@ -1,13 +1,22 @@
 package com.gh4a.utils;
 
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.egit.github.core.User;
 
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
@@ -15,9 +24,8 @@ import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Handler;
-import android.os.HandlerThread;
-import android.os.Looper;
 import android.os.Message;
+import android.os.Process;
 import android.support.v4.graphics.drawable.RoundedBitmapDrawable;
 import android.support.v4.graphics.drawable.RoundedBitmapDrawableFactory;
 import android.support.v4.util.LruCache;
@@ -25,58 +33,100 @@ import android.support.v4.util.SparseArrayCompat;
 import android.util.Log;
 import android.widget.ImageView;
 
+import com.gh4a.BuildConfig;
 import com.gh4a.R;
+import com.gh4a.net.HttpTransport;
+import com.gh4a.net.RequestScheduler;
 
 public class AvatarHandler {
     private static final String TAG = "GravatarHandler";
 
     private static final int MAX_CACHED_IMAGE_SIZE = 60; /* dp - maximum gravatar view size used */
+    private static final long DISK_CACHE_SIZE = 8 * 1024 * 1024;
+    // after that, avatars are fetched again in case they were changed
+    private static final long DISK_CACHE_MAX_AGE = 7 * 24 * 60 * 60 * 1000L;
+    // disk cache entries start with the time they were fetched
+    private static final int DISK_CACHE_HEADER_SIZE = 8;
+    private static final int MAX_POOLED_BITMAPS = 8;
+    // leaves a request slot for the visible screen, see RequestScheduler
+    private static final int WORKER_COUNT = 3;
+    private static final int WORKER_KEEP_ALIVE = 3; /* seconds */
 
     private static Bitmap sDefaultAvatarBitmap;
     private static LruCache<Integer, Bitmap> sCache;
+    // holds the images as downloaded, they're already scaled down by the server
+    private static DiskCache sDiskCache;
+    // evicted bitmaps, decoded into again instead of allocating new ones
+    private static final BitmapPool sBitmapPool = new BitmapPool(MAX_POOLED_BITMAPS);
     private static int sNextRequestId = 1;
 
     private static class Request {
         int id;
         String url;
         ArrayList<ImageView> views;
+        LoadTask task;
     }
     private static final SparseArrayCompat<Request> sRequests = new SparseArrayCompat<>();
     private static int sMaxImageSizePx = -1;
 
-    private static final int MSG_LOAD = 1;
-    private static final int MSG_LOADED = 2;
-    private static final int MSG_DESTROY = 3;
+    private static final int MSG_LOADED = 1;
 
-    private static HandlerThread sWorkerThread = null;
-    private static Handler sWorkerHandler = null;
+    // last in, first out: the most recent requests are for the views on screen
+    private static final ThreadPoolExecutor sWorkers = new ThreadPoolExecutor(
+            WORKER_COUNT, WORKER_COUNT, WORKER_KEEP_ALIVE, TimeUnit.SECONDS,
+            new LinkedBlockingDeque<Runnable>() {
+                @Override
+                public boolean offer(Runnable runnable) {
+                    return offerFirst(runnable);
+                }
+            },
+            new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return new Thread(runnable, "GravatarLoader #" + mCount.incrementAndGet());
+                }
+            });
+
+    static {
+        sWorkers.allowCoreThreadTimeOut(true);
+    }
 
     private static Handler sHandler = new Handler() {
         @Override
         public void handleMessage(Message msg) {
             switch (msg.what) {
                 case MSG_LOADED:
-                    processResult(msg.arg1, (Bitmap) msg.obj);
-                    if (sRequests.size() == 0) {
-                        sendEmptyMessageDelayed(MSG_DESTROY, 3000);
-                    }
-                    break;
-                case MSG_DESTROY:
-                    shutdownWorker();
+                    processResult(msg.arg1, msg.arg2, (Bitmap) msg.obj);
                     break;
             }
         }
 
-        private void processResult(int requestId, Bitmap bitmap) {
+        private void processResult(int requestId, int userId, Bitmap bitmap) {
             final Request request = sRequests.get(requestId);
-            if (request != null && bitmap != null) {
-                sCache.put(request.id, bitmap);
-
-                for (ImageView view : request.views) {
-                    applyAvatarToView(view, bitmap);
+            if (bitmap != null) {
+                Bitmap cached = sCache.get(userId);
+                if (cached != null) {
+                    // a cancelled request for the same user finished first, and
+                    // its bitmap might already be shown, so it must not be replaced;
+                    // ours wasn't shown yet, so it can be reused
+                    sBitmapPool.put(bitmap);
+                    bitmap = cached;
+                } else {
+                    // also if this request was cancelled, the avatar is likely needed again
+                    sCache.put(userId, bitmap);
+                }
+                if (request != null) {
+                    for (ImageView view : request.views) {
+                        applyAvatarToView(view, bitmap);
+                    }
                 }
             }
             sRequests.delete(requestId);
+            if (BuildConfig.DEBUG && sRequests.size() == 0) {
+                Log.d(TAG, "Avatar decoding: " + sBitmapPool.getStats());
+            }
         }
     };
 
@@ -120,15 +170,8 @@ public class AvatarHandler {
         request.views.add(view);
         sRequests.put(requestId, request);
 
-        sHandler.removeMessages(MSG_DESTROY);
-        if (sWorkerThread == null) {
-            sWorkerThread = new HandlerThread("GravatarLoader");
-            sWorkerThread.start();
-            sWorkerHandler = new WorkerHandler(sWorkerThread.getLooper());
-        }
-        Message msg = sWorkerHandler.obtainMessage(MSG_LOAD,
-                requestId, view.getWidth(), request.url);
-        msg.sendToTarget();
+        request.task = new LoadTask(requestId, userId, request.url);
+        sWorkers.execute(request.task);
     }
 
     private static void initialize(Context context) {
@@ -136,13 +179,8 @@ public class AvatarHandler {
         // Use 10% of the available memory or 1MB for the cache, whatever is larger
         final int limit = Math.max(maxMemory / 10, 1024);
 
+        // removed bitmaps are neither pooled nor recycled, as views might still show them
         sCache = new LruCache<Integer, Bitmap>(limit) {
-            @Override
-            protected void entryRemoved(boolean evicted, Integer key, Bitmap oldValue, Bitmap newValue) {
-                super.entryRemoved(evicted, key, oldValue, newValue);
-                oldValue.recycle();
-            }
-
             @Override
             protected int sizeOf(Integer key, Bitmap value) {
                 final long sizeInBytes;
@@ -158,6 +196,7 @@ public class AvatarHandler {
         Resources res = context.getResources();
         sDefaultAvatarBitmap = BitmapFactory.decodeResource(res, R.drawable.default_avatar);
         sMaxImageSizePx = Math.round(res.getDisplayMetrics().density * MAX_CACHED_IMAGE_SIZE);
+        sDiskCache = new DiskCache(new File(context.getCacheDir(), "avatars"), DISK_CACHE_SIZE);
     }
 
     private static String makeUrl(String url, int userId) {
@@ -194,9 +233,9 @@ public class AvatarHandler {
             if (request.views.contains(view)) {
                 request.views.remove(view);
                 if (request.views.isEmpty()) {
-                    if (sWorkerHandler != null) {
-                        sWorkerHandler.removeMessages(MSG_LOAD, request.url);
-                    }
+                    // the view was recycled, don't fetch an avatar nobody waits for
+                    request.task.mCancelled = true;
+                    sWorkers.remove(request.task);
                     sRequests.delete(sRequests.keyAt(i));
                 }
                 return;
@@ -204,33 +243,132 @@ public class AvatarHandler {
         }
     }
 
-    private static Bitmap fetchBitmap(String url) throws IOException {
-        URL realUrl = new URL(url);
-        InputStream input = realUrl.openStream();
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-        byte[] buffer = new byte[2048];
-        int read;
+    private static Bitmap loadBitmap(int userId, String url, LoadTask task) throws IOException {
+        // the size is part of the key, as it depends on the screen density
+        String key = userId + "@" + sMaxImageSizePx;
+        byte[] entry = sDiskCache.get(key);
+        long now = System.currentTimeMillis();
+        if (entry != null && entry.length > DISK_CACHE_HEADER_SIZE
+                && now - ByteBuffer.wrap(entry).getLong() < DISK_CACHE_MAX_AGE) {
+            return decodeBitmap(entry, DISK_CACHE_HEADER_SIZE);
+        }
+
+        if (task.mCancelled) {
+            return null;
+        }
+        byte[] data;
+        try {
+            data = fetchImageData(url);
+        } catch (IOException e) {
+            if (entry != null && entry.length > DISK_CACHE_HEADER_SIZE) {
+                // outdated is better than nothing
+                return decodeBitmap(entry, DISK_CACHE_HEADER_SIZE);
+            }
+            throw e;
+        }
+
+        Bitmap bitmap = decodeBitmap(data, DISK_CACHE_HEADER_SIZE);
+        if (bitmap != null) {
+            ByteBuffer.wrap(data).putLong(0, now);
+            sDiskCache.put(key, data);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Returns the downloaded image, preceded by {@link #DISK_CACHE_HEADER_SIZE}
+     * unused bytes, so it can be stored in the disk cache without copying.
+     */
+    private static byte[] fetchImageData(String url) throws IOException {
+        // avatars don't count against the API rate limit, but shouldn't
+        // compete with the requests of the visible screen either
+        RequestScheduler scheduler = RequestScheduler.getInstance();
+        scheduler.acquire(RequestScheduler.PRIORITY_PREFETCH, false);
+
+        HttpURLConnection connection = null;
+        InputStream input = null;
+        try {
+            connection = HttpTransport.open(url);
+            input = connection.getInputStream();
+            int length = connection.getContentLength();
+            if (length >= 0) {
+                // read right into the result, instead of growing and copying a buffer
+                byte[] data = new byte[DISK_CACHE_HEADER_SIZE + length];
+                int pos = DISK_CACHE_HEADER_SIZE;
+                while (pos < data.length) {
+                    int read = input.read(data, pos, data.length - pos);
+                    if (read == -1) {
+                        throw new EOFException("Avatar truncated at " + pos + " of " + data.length);
+                    }
+                    pos += read;
+                }
+                return data;
+            }
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            output.write(new byte[DISK_CACHE_HEADER_SIZE]);
+            byte[] buffer = new byte[2048];
+            int read;
 
-        while ((read = input.read(buffer)) != -1) {
-            output.write(buffer, 0, read);
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        } finally {
+            if (input != null) {
+                input.close();
+            }
+            if (connection != null) {
+                connection.disconnect();
+            }
+            scheduler.release();
         }
+    }
 
-        byte[] data = output.toByteArray();
+    private static Bitmap decodeBitmap(byte[] data, int offset) {
+        int length = data.length - offset;
         BitmapFactory.Options options = new BitmapFactory.Options();
+        // only parses the header
         options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, offset, length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
 
-        BitmapFactory.decodeByteArray(data, 0, data.length, options);
-
+        // the decoder only samples by powers of two, so use the largest one
+        // that keeps the image at least as large as needed
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= sMaxImageSizePx
+                && options.outHeight / (sampleSize * 2) >= sMaxImageSizePx) {
+            sampleSize *= 2;
+        }
         options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap reusable = null;
+        if (BitmapPool.isSupported()) {
+            reusable = prepareBitmapReuse(options);
+        }
 
-        final int widthRatio = options.outWidth / sMaxImageSizePx;
-        final int heightRatio = options.outHeight / sMaxImageSizePx;
-        options.inSampleSize = heightRatio < widthRatio ? heightRatio : widthRatio;
-
-        Bitmap unscaled = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        Bitmap unscaled;
+        try {
+            unscaled = BitmapFactory.decodeByteArray(data, offset, length, options);
+        } catch (IllegalArgumentException e) {
+            // the image can't be decoded into the pooled bitmap after all
+            if (reusable == null) {
+                throw e;
+            }
+            sBitmapPool.put(reusable);
+            reusable = null;
+            setInBitmap(options, null);
+            unscaled = BitmapFactory.decodeByteArray(data, offset, length, options);
+        }
         if (unscaled == null) {
+            if (reusable != null) {
+                sBitmapPool.put(reusable);
+            }
             return null;
         }
+        sBitmapPool.recordDecode(unscaled, unscaled == reusable);
 
         // We'll scale the image to the desired density
         unscaled.setDensity(0);
@@ -239,42 +377,71 @@ public class AvatarHandler {
         float heightScale = (float) sMaxImageSizePx / (float) unscaled.getHeight();
         float scaleFactor = Math.min(1, Math.min(widthScale, heightScale));
 
-        Bitmap scaled = Bitmap.createScaledBitmap(unscaled,
-                (int) (scaleFactor * unscaled.getWidth()),
-                (int) (scaleFactor * unscaled.getHeight()), true);
+        int width = (int) (scaleFactor * unscaled.getWidth());
+        int height = (int) (scaleFactor * unscaled.getHeight());
+        if (width == unscaled.getWidth() && height == unscaled.getHeight()) {
+            // the usual case, as the server already sends the requested size;
+            // createScaledBitmap() would copy mutable bitmaps anyway
+            return unscaled;
+        }
+
+        Bitmap scaled = Bitmap.createScaledBitmap(unscaled, width, height, true);
         if (scaled != unscaled) {
-            unscaled.recycle();
+            sBitmapPool.recordAllocation(scaled);
+            sBitmapPool.put(unscaled);
         }
         return scaled;
     }
 
-    private static void shutdownWorker() {
-        if (sWorkerThread != null) {
-            sWorkerThread.getLooper().quit();
-            sWorkerHandler = null;
-            sWorkerThread = null;
+    /**
+     * Makes the decoded bitmap reusable, and takes a pooled bitmap to decode
+     * into if there's one of the right size.
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static Bitmap prepareBitmapReuse(BitmapFactory.Options options) {
+        options.inMutable = true;
+        // before KitKat, only unsampled images of the exact same size can be
+        // decoded into an existing bitmap; the server usually sends them that way
+        if (options.inSampleSize != 1) {
+            return null;
         }
+        Bitmap bitmap = sBitmapPool.get(options.outWidth, options.outHeight,
+                Bitmap.Config.ARGB_8888);
+        options.inBitmap = bitmap;
+        return bitmap;
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void setInBitmap(BitmapFactory.Options options, Bitmap bitmap) {
+        options.inBitmap = bitmap;
     }
 
-    private static class WorkerHandler extends Handler {
-        public WorkerHandler(Looper looper) {
-            super(looper);
+    private static class LoadTask implements Runnable {
+        private final int mRequestId;
+        private final int mUserId;
+        private final String mUrl;
+        // set on the main thread, checked before going to the network
+        volatile boolean mCancelled;
+
+        public LoadTask(int requestId, int userId, String url) {
+            mRequestId = requestId;
+            mUserId = userId;
+            mUrl = url;
         }
 
         @Override
-        public void handleMessage(Message msg) {
-            switch (msg.what) {
-                case MSG_LOAD:
-                    String url = (String) msg.obj;
-                    Bitmap bitmap = null;
-                    try {
-                        bitmap = fetchBitmap(url);
-                    } catch (IOException e) {
-                        Log.e(TAG, "Couldn't fetch gravatar from URL " + url, e);
-                    }
-                    sHandler.obtainMessage(MSG_LOADED, msg.arg1, 0, bitmap).sendToTarget();
-                    break;
+        public void run() {
+            if (mCancelled) {
+                return;
+            }
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            Bitmap bitmap = null;
+            try {
+                bitmap = loadBitmap(mUserId, mUrl, this);
+            } catch (IOException e) {
+                Log.e(TAG, "Couldn't fetch gravatar from URL " + mUrl, e);
             }
+            sHandler.obtainMessage(MSG_LOADED, mRequestId, mUserId, bitmap).sendToTarget();
         }
     }
-}
\ No newline at end of file
+}
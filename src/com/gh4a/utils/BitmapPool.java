@@ -0,0 +1,96 @@
+package com.gh4a.utils;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps bitmaps that are no longer used, so they can be decoded into again
+ * via {@link android.graphics.BitmapFactory.Options#inBitmap} instead of
+ * allocating new ones. Meant for images of mostly the same size, e.g. avatars,
+ * so bitmaps are only handed out for exactly matching sizes.
+ *
+ * Also counts how many decodes reused a bitmap, and how many bitmaps and
+ * bytes were allocated for the others and for scaling.
+ */
+public class BitmapPool {
+    private final int mMaxCount;
+    private final ArrayList<Bitmap> mBitmaps = new ArrayList<>();
+    private int mDecodeCount;
+    private int mReuseCount;
+    private int mAllocationCount;
+    private long mAllocatedBytes;
+
+    public BitmapPool(int maxCount) {
+        mMaxCount = maxCount;
+    }
+
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+    }
+
+    /**
+     * Returns a bitmap of the given size and config, or null if there is none.
+     */
+    public synchronized Bitmap get(int width, int height, Bitmap.Config config) {
+        for (int i = mBitmaps.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = mBitmaps.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height
+                    && bitmap.getConfig() == config) {
+                return mBitmaps.remove(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes a bitmap that isn't shown anymore. It's recycled if it can't be reused.
+     */
+    public synchronized void put(Bitmap bitmap) {
+        if (bitmap.isRecycled()) {
+            return;
+        }
+        if (!isSupported() || !bitmap.isMutable()) {
+            bitmap.recycle();
+            return;
+        }
+        if (mBitmaps.size() >= mMaxCount) {
+            // make room for the more recent one
+            mBitmaps.remove(0).recycle();
+        }
+        mBitmaps.add(bitmap);
+    }
+
+    public synchronized void recordDecode(Bitmap bitmap, boolean reused) {
+        mDecodeCount++;
+        if (reused) {
+            mReuseCount++;
+        } else {
+            recordAllocation(bitmap);
+        }
+    }
+
+    /**
+     * Records a bitmap that was created in addition to the decoded one,
+     * e.g. when scaling it.
+     */
+    public synchronized void recordAllocation(Bitmap bitmap) {
+        mAllocationCount++;
+        mAllocatedBytes += getByteCount(bitmap);
+    }
+
+    public synchronized String getStats() {
+        return mDecodeCount + " decodes, " + mReuseCount + " reused bitmaps, "
+                + mAllocationCount + " allocated (" + (mAllocatedBytes / 1024) + " kB)";
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB_MR1)
+    private static long getByteCount(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR1) {
+            return bitmap.getByteCount();
+        }
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
@@ -0,0 +1,211 @@
+package com.gh4a.utils;
+
+import android.util.Log;
+
+import com.gh4a.Constants;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Simple file backed key/value store with a byte budget. Entries are evicted
+ * in least recently used order once the budget is exceeded. Accesses do disk
+ * I/O, so they must not happen on the main thread.
+ */
+public class DiskCache {
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final File mDirectory;
+    private final long mMaxSize;
+    // file name -> file size, in access order
+    private LinkedHashMap<String, Long> mEntries;
+    private long mSize;
+
+    public DiskCache(File directory, long maxSize) {
+        mDirectory = directory;
+        mMaxSize = maxSize;
+    }
+
+    public synchronized byte[] get(String key) {
+        ensureInitialized();
+        String name = hashKey(key);
+        if (!mEntries.containsKey(name)) {
+            return null;
+        }
+
+        File file = new File(mDirectory, name);
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            // refresh LRU position, also across restarts
+            mEntries.get(name);
+            file.setLastModified(System.currentTimeMillis());
+            return out.toByteArray();
+        } catch (IOException e) {
+            Log.w(Constants.LOG_TAG, "Could not read cache entry " + name, e);
+            removeByName(name);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    public synchronized void put(String key, byte[] data) {
+        ensureInitialized();
+        String name = hashKey(key);
+        File file = new File(mDirectory, name);
+        File tmpFile = new File(mDirectory, name + TMP_SUFFIX);
+        OutputStream out = null;
+
+        try {
+            out = new FileOutputStream(tmpFile);
+            out.write(data);
+            out.close();
+            out = null;
+            if (!tmpFile.renameTo(file)) {
+                throw new IOException("Could not rename " + tmpFile);
+            }
+        } catch (IOException e) {
+            Log.w(Constants.LOG_TAG, "Could not write cache entry " + name, e);
+            closeQuietly(out);
+            tmpFile.delete();
+            removeByName(name);
+            return;
+        }
+
+        Long oldSize = mEntries.put(name, (long) data.length);
+        if (oldSize != null) {
+            mSize -= oldSize;
+        }
+        mSize += data.length;
+        trimToSize();
+    }
+
+    public synchronized void remove(String key) {
+        ensureInitialized();
+        removeByName(hashKey(key));
+    }
+
+    public synchronized void clear() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        if (mEntries != null) {
+            mEntries.clear();
+        }
+        mSize = 0;
+    }
+
+    public synchronized long size() {
+        ensureInitialized();
+        return mSize;
+    }
+
+    public long maxSize() {
+        return mMaxSize;
+    }
+
+    private void removeByName(String name) {
+        Long size = mEntries.remove(name);
+        if (size != null) {
+            mSize -= size;
+        }
+        new File(mDirectory, name).delete();
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Long>> iter = mEntries.entrySet().iterator();
+        while (mSize > mMaxSize && iter.hasNext()) {
+            Map.Entry<String, Long> entry = iter.next();
+            new File(mDirectory, entry.getKey()).delete();
+            mSize -= entry.getValue();
+            iter.remove();
+        }
+    }
+
+    private void ensureInitialized() {
+        if (mEntries != null) {
+            return;
+        }
+
+        mEntries = new LinkedHashMap<>(16, 0.75f, true);
+        mSize = 0;
+
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            Log.w(Constants.LOG_TAG, "Could not create cache directory " + mDirectory);
+            return;
+        }
+
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        // oldest first, so that the LRU order survives restarts
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified(), r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+        for (File file : files) {
+            if (file.getName().endsWith(TMP_SUFFIX)) {
+                file.delete();
+                continue;
+            }
+            long length = file.length();
+            mEntries.put(file.getName(), length);
+            mSize += length;
+        }
+        trimToSize();
+    }
+
+    private static String hashKey(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] hash = digest.digest(key.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // MD5 and UTF-8 are always available
+            return String.valueOf(key.hashCode());
+        }
+    }
+
+    private static void closeQuietly(Closeable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                // ignored
+            }
+        }
+    }
+}
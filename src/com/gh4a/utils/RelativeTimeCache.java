@@ -0,0 +1,93 @@
+package com.gh4a.utils;
+
+import android.content.Context;
+import android.support.v4.util.LruCache;
+import android.text.format.DateUtils;
+
+import com.gh4a.Gh4Application;
+
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Caches relative time texts. The elapsed time is rounded down to a bucket,
+ * whole minutes in the first hour, whole hours in the first day and whole
+ * days afterwards, and all times in the same bucket share their text. Dates
+ * shown instead of long ago times are cached per day.
+ */
+public class RelativeTimeCache {
+    private static final int MAX_ENTRIES = 256;
+
+    // elapsed bucket start -> text
+    private static final LruCache<Long, CharSequence> sRelativeTexts = new LruCache<>(MAX_ENTRIES);
+    // local day -> text
+    private static final LruCache<Long, CharSequence> sDateTexts = new LruCache<>(MAX_ENTRIES);
+
+    private RelativeTimeCache() {
+    }
+
+    public static CharSequence format(Context context, long time,
+            boolean showDateIfLongAgo, long now) {
+        long elapsed = now - time;
+        if (showDateIfLongAgo && Math.abs(elapsed) >= DateUtils.WEEK_IN_MILLIS) {
+            Long day = getLocalDay(time);
+            CharSequence text = sDateTexts.get(day);
+            if (text == null) {
+                text = DateUtils.getRelativeTimeSpanString(context, time, true);
+                sDateTexts.put(day, text);
+            }
+            return text;
+        }
+        if (elapsed < 0) {
+            // clock skew, rare enough to not be cached
+            return Gh4Application.get().getPrettyTimeInstance().format(new Date(time));
+        }
+
+        Long bucket = elapsed - elapsed % getGranularity(elapsed);
+        CharSequence text = sRelativeTexts.get(bucket);
+        if (text == null) {
+            // a time just after the start of the bucket
+            text = Gh4Application.get().getPrettyTimeInstance().format(new Date(now - bucket - 1));
+            sRelativeTexts.put(bucket, text);
+        }
+        return text;
+    }
+
+    /**
+     * Returns the time at which the text for the given time moves to the
+     * next bucket, or {@link Long#MAX_VALUE} if it doesn't change anymore.
+     */
+    public static long getNextChange(long time, boolean showDateIfLongAgo, long now) {
+        long elapsed = now - time;
+        if (showDateIfLongAgo && Math.abs(elapsed) >= DateUtils.WEEK_IN_MILLIS) {
+            return Long.MAX_VALUE;
+        }
+        if (elapsed < 0) {
+            return now + DateUtils.MINUTE_IN_MILLIS;
+        }
+        long granularity = getGranularity(elapsed);
+        return time + elapsed - elapsed % granularity + granularity;
+    }
+
+    /**
+     * Must be called when the locale changes.
+     */
+    public static void clear() {
+        sRelativeTexts.evictAll();
+        sDateTexts.evictAll();
+    }
+
+    private static long getGranularity(long elapsed) {
+        if (elapsed < DateUtils.HOUR_IN_MILLIS) {
+            return DateUtils.MINUTE_IN_MILLIS;
+        } else if (elapsed < DateUtils.DAY_IN_MILLIS) {
+            return DateUtils.HOUR_IN_MILLIS;
+        }
+        return DateUtils.DAY_IN_MILLIS;
+    }
+
+    private static long getLocalDay(long time) {
+        long localTime = time + TimeZone.getDefault().getOffset(time);
+        return (long) Math.floor((double) localTime / DateUtils.DAY_IN_MILLIS);
+    }
+}
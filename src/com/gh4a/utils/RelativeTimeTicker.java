@@ -0,0 +1,88 @@
+package com.gh4a.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.widget.TextView;
+
+import com.gh4a.R;
+
+import java.util.Date;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps relative time texts of views up to date while they're shown. There's
+ * one ticker for the whole app, it only runs when the text of one of the views
+ * changes, that is, when its time moves to the next bucket of
+ * {@link RelativeTimeCache}. Views that aren't attached to a window are
+ * skipped and updated on a later tick.
+ *
+ * Must only be used from the main thread.
+ */
+public class RelativeTimeTicker {
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+    // views whose text was set via setText(), values are unused
+    private static final WeakHashMap<TextView, Boolean> sViews = new WeakHashMap<>();
+    private static long sNextTick = Long.MAX_VALUE;
+
+    private static final Runnable sTickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            sNextTick = Long.MAX_VALUE;
+            tick();
+        }
+    };
+
+    private static class Entry {
+        final long time;
+        final boolean showDateIfLongAgo;
+
+        Entry(long time, boolean showDateIfLongAgo) {
+            this.time = time;
+            this.showDateIfLongAgo = showDateIfLongAgo;
+        }
+    }
+
+    private RelativeTimeTicker() {
+    }
+
+    /**
+     * Sets the text of the view to the relative time of the given date, and
+     * keeps it updated as long as the view exists.
+     */
+    public static void setText(TextView view, Date date, boolean showDateIfLongAgo) {
+        long now = System.currentTimeMillis();
+        long time = date.getTime();
+        view.setText(RelativeTimeCache.format(view.getContext(), time, showDateIfLongAgo, now));
+        view.setTag(R.id.RelativeTimeTicker, new Entry(time, showDateIfLongAgo));
+        sViews.put(view, Boolean.TRUE);
+        schedule(RelativeTimeCache.getNextChange(time, showDateIfLongAgo, now), now);
+    }
+
+    private static void tick() {
+        long now = System.currentTimeMillis();
+        long next = Long.MAX_VALUE;
+        for (TextView view : sViews.keySet()) {
+            Entry entry = (Entry) view.getTag(R.id.RelativeTimeTicker);
+            if (view.getWindowToken() != null) {
+                CharSequence text = RelativeTimeCache.format(view.getContext(),
+                        entry.time, entry.showDateIfLongAgo, now);
+                if (!TextUtils.equals(text, view.getText())) {
+                    view.setText(text);
+                }
+            }
+            next = Math.min(next,
+                    RelativeTimeCache.getNextChange(entry.time, entry.showDateIfLongAgo, now));
+        }
+        schedule(next, now);
+    }
+
+    private static void schedule(long time, long now) {
+        if (time == Long.MAX_VALUE || time >= sNextTick) {
+            return;
+        }
+        sHandler.removeCallbacks(sTickRunnable);
+        sHandler.postDelayed(sTickRunnable, Math.max(0, time - now));
+        sNextTick = time;
+    }
+}
@@ -0,0 +1,104 @@
+package com.gh4a.utils;
+
+import android.annotation.TargetApi;
+import android.app.Activity;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.gh4a.Constants;
+import com.gh4a.activities.Github4AndroidActivity;
+import com.gh4a.activities.home.HomeActivity;
+
+import java.util.ArrayList;
+
+/**
+ * Measures the cold start, from process start until {@link HomeActivity}
+ * shows its first content. Process start is approximated by the time the
+ * application class is loaded.
+ *
+ * The result is logged with the intermediate steps. On KitKat and newer it's
+ * also reported via {@link Activity#reportFullyDrawn()}, so it shows up as
+ * 'Fully drawn' in the activity manager log, e.g. when starting the app with
+ * 'adb shell am start -W'.
+ *
+ * Starts that don't end up showing the home screen, e.g. because the user
+ * isn't logged in or the app was started via a link, aren't measured.
+ * Must only be used from the main thread.
+ */
+public class StartupTrace {
+    private static long sStartTime = -1;
+    private static final ArrayList<String> sStepNames = new ArrayList<>();
+    private static final ArrayList<Long> sStepTimes = new ArrayList<>();
+
+    private StartupTrace() {
+    }
+
+    public static void start() {
+        sStartTime = SystemClock.elapsedRealtime();
+    }
+
+    public static boolean isRunning() {
+        return sStartTime >= 0;
+    }
+
+    /**
+     * Records an intermediate step. Steps are only recorded once.
+     */
+    public static void mark(String step) {
+        if (isRunning() && !sStepNames.contains(step)) {
+            sStepNames.add(step);
+            sStepTimes.add(SystemClock.elapsedRealtime() - sStartTime);
+        }
+    }
+
+    public static void abort() {
+        sStartTime = -1;
+        sStepNames.clear();
+        sStepTimes.clear();
+    }
+
+    public static void onActivityCreated(Activity activity) {
+        // the launcher activity forwards to the home screen
+        if (activity instanceof Github4AndroidActivity || activity instanceof HomeActivity) {
+            mark(activity.getClass().getSimpleName() + " created");
+        } else {
+            abort();
+        }
+    }
+
+    /**
+     * To be called when an activity showed content. Finishes the trace
+     * if it is the home screen, aborts it otherwise.
+     */
+    public static void onContentShown(Activity activity) {
+        if (!isRunning()) {
+            return;
+        }
+        if (!(activity instanceof HomeActivity)) {
+            abort();
+            return;
+        }
+
+        long duration = SystemClock.elapsedRealtime() - sStartTime;
+        StringBuilder sb = new StringBuilder("Cold start took ").append(duration).append(" ms");
+        for (int i = 0; i < sStepNames.size(); i++) {
+            sb.append(i == 0 ? " (" : ", ");
+            sb.append(sStepNames.get(i)).append(" at ").append(sStepTimes.get(i)).append(" ms");
+        }
+        if (!sStepNames.isEmpty()) {
+            sb.append(")");
+        }
+        Log.i(Constants.LOG_TAG, sb.toString());
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            reportFullyDrawn(activity);
+        }
+        abort();
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static void reportFullyDrawn(Activity activity) {
+        activity.reportFullyDrawn();
+    }
+}
@@ -18,9 +18,7 @@ package com.gh4a.utils;
 import android.content.Context;
 import android.graphics.Typeface;
 import android.text.SpannableStringBuilder;
-import android.text.format.DateUtils;
 
-import com.gh4a.Gh4Application;
 import com.gh4a.widget.CustomTypefaceSpan;
 import com.gh4a.widget.StyleableTextView;
 
@@ -99,14 +97,8 @@ public class StringUtils {
     }
 
     public static CharSequence formatRelativeTime(Context context, Date date, boolean showDateIfLongAgo) {
-        long now = System.currentTimeMillis();
-        long time = date.getTime();
-        long duration = Math.abs(now - time);
-
-        if (showDateIfLongAgo && duration >= DateUtils.WEEK_IN_MILLIS) {
-            return DateUtils.getRelativeTimeSpanString(context, time, true);
-        }
-        return Gh4Application.get().getPrettyTimeInstance().format(date);
+        return RelativeTimeCache.format(context, date.getTime(),
+                showDateIfLongAgo, System.currentTimeMillis());
     }
 
     public static void applyBoldTagsAndSetText(StyleableTextView view, String input) {
@@ -59,7 +59,8 @@ public class TypefaceCache {
         return getTypeface(context, typeface);
     }
 
-    public static Typeface getTypeface(Context context, int typeface) {
+    // also used for formatting text on background threads
+    public static synchronized Typeface getTypeface(Context context, int typeface) {
         if (typeface < TF_REGULAR || typeface > TF_BOLDCONDENSED) {
             return null;
         }
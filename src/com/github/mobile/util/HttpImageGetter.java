@@ -37,6 +37,7 @@ import android.widget.TextView;
 
 import com.gh4a.R;
 import com.gh4a.fragment.SettingsFragment;
+import com.gh4a.net.HttpTransport;
 import com.gh4a.utils.FileUtils;
 import com.gh4a.utils.UiUtils;
 
@@ -45,7 +46,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
-import java.net.URL;
 import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -399,7 +399,7 @@ public class HttpImageGetter implements ImageGetter {
             InputStream is = null;
             HttpURLConnection connection = null;
             try {
-                connection = (HttpURLConnection) new URL(source).openConnection();
+                connection = HttpTransport.open(source);
                 is = connection.getInputStream();
                 if (is != null) {
                     String mime = connection.getContentType();